@@ -1,11 +1,32 @@
 
 import java.util.Arrays;
 
-public class Board {
+/**
+ * An N-by-N slider puzzle board.
+ *
+ * A board knows its Hamming and Manhattan distances and where its blank is
+ * from the moment it is built: the public constructor computes them once, and
+ * neighbors() derives each neighbor's values from this board's by looking at
+ * the one tile that moved, so both distance methods are plain field reads.
+ *
+ * The same goes for a 64-bit Zobrist hash of the tiles: the XOR of one random
+ * key per (block, position) pair, so a move updates it with two XORs. The keys
+ * are computed when needed rather than stored, since a table would take N^4
+ * longs. It is
+ * what hashCode() returns and key(), which Solver's closed set holds for
+ * boards too large for PackedBoard.
+ */
+public class Board implements SearchBoard<Board> {
 
   private int[] board; // array is the board, the indices are the blocks
   private int N; // the width of an array (i.e., a 3x5 array has width 3)
   private int size; // size of the board
+  private int zeroIndex; // index of the blank
+  private int hamming; // number of blocks out of place
+  private int manhattan; // sum of Manhattan distances between blocks and goal
+  private long zobrist; // Zobrist hash of the blocks
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
 
   // construct a board from an N-by-N array of blocks
   // (where blocks[i][j] = block in row i, column j)
@@ -21,20 +42,73 @@ public class Board {
         this.board[k++] = blocks2D[i][j];
       }
     }
+
+    computeCachedFields();
   }
 
-  private Board(int[] blocks1D, int width) {
-    this.N = width;
-    this.size = blocks1D.length;
-    this.board = new int[size];
+  // copy of a board's blocks; the caller sets up the cached fields
+  private Board(Board original) {
+    this.N = original.N;
+    this.size = original.size;
+    this.board = original.board.clone();
+  }
 
-    int k = 0;
+  // Zobrist key of block blockValue at index i: the SplitMix64 finalizer over
+  // the (blockValue * N^2 + i)-th step of a Weyl sequence, a bijection, so
+  // every (block, position) pair gets its own key, the same from run to run
+  private long zobristKey(int blockValue, int i) {
+    long z = ((long) blockValue * size + i + 1) * GOLDEN_GAMMA;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  // compute the blank position, both distances and the hash from scratch
+  private void computeCachedFields() {
+    hamming = 0;
+    manhattan = 0;
+    zobrist = 0;
 
     for (int i = 0; i < size; i++) {
-      this.board[k++] = blocks1D[i];
+      int blockValue = board[i];
+
+      if (blockValue == 0) {
+        zeroIndex = i;
+        continue;
+      }
+
+      zobrist ^= zobristKey(blockValue, i);
+
+      if (blockValue != i + 1) {
+        hamming++;
+        manhattan += distance(blockValue, i);
+      }
     }
   }
 
+  // Manhattan distance of block blockValue at index i from its goal index
+  private int distance(int blockValue, int i) {
+    int goal = blockValue - 1;
+
+    return Math.abs(i / N - goal / N) + Math.abs(i % N - goal % N);
+  }
+
+  // the board with the block at index i, which must neighbor the blank, moved
+  // into the blank, with its distances and hash updated for just that block
+  Board slide(int i) {
+    Board next = new Board(this);
+    int blockValue = board[i];
+
+    swap(next, zeroIndex, i);
+    next.zeroIndex = i;
+    next.manhattan = manhattan - distance(blockValue, i) + distance(blockValue, zeroIndex);
+    next.hamming = hamming - (blockValue != i + 1 ? 1 : 0) + (blockValue != zeroIndex + 1 ? 1 : 0);
+
+    next.zobrist = zobrist ^ zobristKey(blockValue, i) ^ zobristKey(blockValue, zeroIndex);
+
+    return next;
+  }
+
   // board dimension N
   public int dimension() {
     return N;
@@ -42,41 +116,27 @@ public class Board {
 
   // number of blocks out of place
   public int hamming() {
-    int distance = 0;
-
-    for (int i = 0; i < size; i++) {
-      int blockIndex = i + 1;
-      int blockValue = board[i];
-
-      if (blockValue != 0 && blockValue != blockIndex) {
-        distance++;
-      }
-    }
-
-    return distance;
+    return hamming;
   }
 
   // sum of Manhattan distances between blocks and goal
   public int manhattan() {
-    int distance = 0;
-
-    for (int i = 0; i < size; i++) {
-      int blockIndex = i + 1;
-      int blockValue = board[i];
-
-      if (blockValue != 0 && blockValue != blockIndex) {
-        Coordinates wrongPos = convert1Dto2D(blockIndex);
-        Coordinates rightPos = convert1Dto2D(blockValue);
+    return manhattan;
+  }
 
-        int horizontalDistance = wrongPos.column - rightPos.column;
-        int verticalDistance = wrongPos.row - rightPos.row;
+  // copy of the blocks in row-major order, 0 for the blank
+  int[] blocks() {
+    return board.clone();
+  }
 
-        // sum of the vertical and horizontal distance
-        distance += Math.abs(verticalDistance) + Math.abs(horizontalDistance);
-      }
-    }
+  // row-major index of the blank
+  public int blankIndex() {
+    return zeroIndex;
+  }
 
-    return distance;
+  // 64-bit Zobrist hash of the blocks
+  public long key() {
+    return zobrist;
   }
 
   // is this board the goal board?
@@ -86,7 +146,7 @@ public class Board {
 
   // a board that is obtained by exchanging two adjacent blocks in the same row
   public Board twin() {
-    Board twinBoard = new Board(this.board, this.N);
+    Board twinBoard = new Board(this);
 
     for (int i = 0; i < size; i++) {
       if (twinBoard.board[i] == 0) continue;
@@ -103,6 +163,8 @@ public class Board {
       }
     }
 
+    twinBoard.computeCachedFields();
+
     return twinBoard;
   }
 
@@ -126,7 +188,7 @@ public class Board {
 
     Board that = (Board) o;
 
-    if (this.dimension() != that.dimension())
+    if (this.dimension() != that.dimension() || this.zobrist != that.zobrist)
       return false;
 
     if (Arrays.equals(this.board, that.board))
@@ -135,45 +197,34 @@ public class Board {
     return false;
   }
 
+  @Override
+  public int hashCode() {
+    return Long.hashCode(zobrist);
+  }
+
   // all neighboring boards
   public Iterable<Board> neighbors() {
     Stack<Board> boardStack = new Stack<Board>();
-    int zeroIndex = -1;
-
-    for (int i = 0; i < size; i++) {
-      if (board[i] == 0) {
-        zeroIndex = i;
-        break;
-      }
-    }
 
     int topIndex = zeroIndex - N;
     int bottomIndex = zeroIndex + N;
     int leftBlockIndex = zeroIndex - 1;
     int rightBlockIndex = zeroIndex + 1;
 
-    if (topIndex >= 0 && board[topIndex] != 0) { // TOP
-      Board topBoard = new Board(this.board,  this.N);
-      swap(topBoard, zeroIndex, topIndex);
-      boardStack.push(topBoard);
+    if (topIndex >= 0) { // TOP
+      boardStack.push(slide(topIndex));
     }
 
-    if (bottomIndex < size && board[bottomIndex] != 0) { // BOTTOM
-      Board bottomBoard = new Board(this.board, this.N);
-      swap(bottomBoard, zeroIndex, bottomIndex);
-      boardStack.push(bottomBoard);
+    if (bottomIndex < size) { // BOTTOM
+      boardStack.push(slide(bottomIndex));
     }
 
-    if (leftBlockIndex >= 0 && leftBlockIndex % N != N - 1 && board[leftBlockIndex] != 0) { // LEFT
-      Board leftBoard = new Board(this.board, this.N);
-      swap(leftBoard, zeroIndex, leftBlockIndex);
-      boardStack.push(leftBoard);
+    if (zeroIndex % N != 0) { // LEFT
+      boardStack.push(slide(leftBlockIndex));
     }
 
-    if (rightBlockIndex < size && rightBlockIndex % N != 0 && board[rightBlockIndex] != 0) { // RIGHT
-      Board rightBoard = new Board(this.board, this.N);
-      swap(rightBoard, zeroIndex, rightBlockIndex);
-      boardStack.push(rightBoard);
+    if (zeroIndex % N != N - 1) { // RIGHT
+      boardStack.push(slide(rightBlockIndex));
     }
 
     return boardStack;
@@ -193,40 +244,6 @@ public class Board {
     return s.toString();
   }
 
-  private Coordinates convert1Dto2D(int index) {
-    Coordinates c = null;
-
-    if (index == 0) {
-      c = new Coordinates(N-1, N-1);
-
-    } else {
-      int k = 1;
-
-      out:
-      for (int i = 0; i < N; i++) {
-        for (int j = 0; j < N; j++) {
-          if (index == k) {
-            c = new Coordinates(i, j);
-            break out;
-          }
-          k++;
-        }
-      }
-    }
-
-    return c;
-  }
-
-  private class Coordinates {
-    private int row;
-    private int column;
-
-    public Coordinates(int row, int column) {
-      this.row = row;
-      this.column = column;
-    }
-  }
-
   // unit tests (not graded)
   public static void main(String[] args) {
 
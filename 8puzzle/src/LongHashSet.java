@@ -0,0 +1,106 @@
+
+/**
+ * A set of long values in one open-addressing table with linear probing.
+ *
+ * Values are stored unboxed, so adding one costs no allocation apart from the
+ * occasional doubling of the table, which happens at half full. 0 marks an
+ * empty slot, so the value 0 itself is tracked by a separate flag. There is
+ * no removal.
+ */
+public class LongHashSet {
+
+  private long[] table;
+  private int mask;
+  private int N = 0; // number of values in the table, not counting 0
+  private boolean containsZero = false;
+
+  // construct an empty set
+  public LongHashSet() {
+    this(16);
+  }
+
+  // construct an empty set with room for about expected values before it grows
+  public LongHashSet(int expected) {
+    if (expected < 0) throw new java.lang.IllegalArgumentException();
+
+    int capacity = Integer.highestOneBit(Math.max(8, 2 * expected - 1)) * 2;
+    table = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  // first slot to probe for the value
+  private int slot(long value) {
+    long h = value * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private void resize(int capacity) {
+    long[] old = table;
+    table = new long[capacity];
+    mask = capacity - 1;
+
+    for (long value : old) {
+      if (value == 0) continue;
+
+      int i = slot(value);
+      while (table[i] != 0) i = (i + 1) & mask;
+      table[i] = value;
+    }
+  }
+
+  // number of values in the set
+  public int size() {
+    return containsZero ? N + 1 : N;
+  }
+
+  // is the value in the set?
+  public boolean contains(long value) {
+    if (value == 0) return containsZero;
+
+    for (int i = slot(value); table[i] != 0; i = (i + 1) & mask) {
+      if (table[i] == value) return true;
+    }
+
+    return false;
+  }
+
+  // add the value, returns false if it was already in the set
+  public boolean add(long value) {
+    if (value == 0) {
+      boolean added = !containsZero;
+      containsZero = true;
+      return added;
+    }
+
+    int i = slot(value);
+    for (; table[i] != 0; i = (i + 1) & mask) {
+      if (table[i] == value) return false;
+    }
+
+    table[i] = value;
+    N++;
+
+    if (2 * N > table.length) resize(2 * table.length);
+
+    return true;
+  }
+
+  // unit testing
+  public static void main(String[] args) {
+    LongHashSet set = new LongHashSet();
+    java.util.HashSet<Long> reference = new java.util.HashSet<Long>();
+
+    for (int i = 0; i < 1000000; i++) {
+      long value = StdRandom.uniform(100000) - 50000L;
+      if (set.add(value) != reference.add(value))
+        throw new IllegalStateException("add(" + value + ") disagrees with HashSet");
+    }
+
+    for (long value = -60000; value < 60000; value++) {
+      if (set.contains(value) != reference.contains(value))
+        throw new IllegalStateException("contains(" + value + ") disagrees with HashSet");
+    }
+
+    StdOut.println(set.size() + " distinct values, same as HashSet: " + (set.size() == reference.size()));
+  }
+}
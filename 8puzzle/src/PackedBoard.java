@@ -0,0 +1,351 @@
+
+/**
+ * An N-by-N slider puzzle board, for N up to 5, packed into two longs.
+ *
+ * Tile i (row-major) sits in bits [b*i, b*i + b) of the 128-bit number
+ * high:low, with b = 4 bits per tile up to 4x4 (so 16 tiles fill low exactly
+ * and high stays 0) and b = 5 bits for 5x5 (25 tiles in 125 bits, tile 12
+ * straddling the two words). The position of the blank and both distances
+ * are cached, as on Board.
+ *
+ * Since the blank is 0, moving a tile into the blank is two XORs of the tile
+ * value at its old and new position, so a neighbor costs a few shifts and
+ * masks and no array copy, and its distances are updated for the one tile
+ * that moved; equals compares the two words. Up to 4x4 the key is the packed
+ * board itself times an odd constant, so it is exact; for 5x5 it hashes both
+ * words with the SplitMix64 finalizer. Solver's A* searches on these boards
+ * whenever they fit.
+ */
+public class PackedBoard implements SearchBoard<PackedBoard> {
+
+  // largest N whose boards fit in two longs
+  public static final int MAX_DIMENSION = 5;
+
+  private final long low;
+  private final long high;
+  private final int N;
+  private final int blank; // row-major index of the blank
+  private final int hamming; // number of blocks out of place
+  private final int manhattan; // sum of Manhattan distances between blocks and goal
+
+  // construct a board from an N-by-N array of blocks
+  // (where blocks[i][j] = block in row i, column j)
+  public PackedBoard(int[][] blocks2D) {
+    this(rowMajor(blocks2D), blocks2D.length);
+  }
+
+  // construct a board from its N^2 blocks in row-major order
+  PackedBoard(int[] blocks, int N) {
+    if (N < 1 || N > MAX_DIMENSION || blocks.length != N * N)
+      throw new java.lang.IllegalArgumentException();
+
+    long low = 0;
+    long high = 0;
+    int blank = -1;
+
+    for (int k = 0; k < blocks.length; k++) {
+      int value = blocks[k];
+
+      if (value < 0 || value >= N * N)
+        throw new java.lang.IllegalArgumentException();
+      if (value == 0)
+        blank = k;
+
+      low |= lowPart(N, value, k);
+      high |= highPart(N, value, k);
+    }
+
+    if (blank < 0)
+      throw new java.lang.IllegalArgumentException();
+
+    this.low = low;
+    this.high = high;
+    this.N = N;
+    this.blank = blank;
+    this.hamming = scanHamming();
+    this.manhattan = scanManhattan();
+  }
+
+  // a board whose distances are computed from scratch
+  private PackedBoard(long low, long high, int N, int blank) {
+    this.low = low;
+    this.high = high;
+    this.N = N;
+    this.blank = blank;
+    this.hamming = scanHamming();
+    this.manhattan = scanManhattan();
+  }
+
+  // a board whose distances the caller already knows
+  private PackedBoard(long low, long high, int N, int blank, int hamming, int manhattan) {
+    this.low = low;
+    this.high = high;
+    this.N = N;
+    this.blank = blank;
+    this.hamming = hamming;
+    this.manhattan = manhattan;
+  }
+
+  private static int[] rowMajor(int[][] blocks2D) {
+    int N = blocks2D.length;
+    int[] blocks = new int[N * N];
+
+    for (int i = 0; i < N; i++) {
+      if (blocks2D[i].length != N)
+        throw new java.lang.IllegalArgumentException();
+
+      System.arraycopy(blocks2D[i], 0, blocks, i * N, N);
+    }
+
+    return blocks;
+  }
+
+  private static int bitsPerTile(int N) {
+    return N <= 4 ? 4 : 5;
+  }
+
+  // the bits of value placed at tile k that fall in the low word
+  private static long lowPart(int N, long value, int k) {
+    int shift = bitsPerTile(N) * k;
+    return shift < 64 ? value << shift : 0;
+  }
+
+  // the bits of value placed at tile k that fall in the high word
+  private static long highPart(int N, long value, int k) {
+    int shift = bitsPerTile(N) * k;
+
+    if (shift >= 64) return value << (shift - 64);
+    if (shift == 0) return 0;
+    return value >>> (64 - shift); // straddling tile, or 0 if it fits in low
+  }
+
+  // block at row-major index k
+  private int tile(int k) {
+    int bits = bitsPerTile(N);
+    int shift = bits * k;
+    long word;
+
+    if (shift >= 64) word = high >>> (shift - 64);
+    else if (shift == 0) word = low;
+    else word = (low >>> shift) | (high << (64 - shift));
+
+    return (int) word & ((1 << bits) - 1);
+  }
+
+  // Manhattan distance of block value at index k from its goal index
+  private int distance(int value, int k) {
+    int goal = value - 1;
+
+    return Math.abs(k / N - goal / N) + Math.abs(k % N - goal % N);
+  }
+
+  // the board with the tile at index k moved into the blank, with its
+  // distances updated for just that tile
+  private PackedBoard slide(int k) {
+    int value = tile(k);
+    long newLow = low ^ lowPart(N, value, k) ^ lowPart(N, value, blank);
+    long newHigh = high ^ highPart(N, value, k) ^ highPart(N, value, blank);
+    int newManhattan = manhattan - distance(value, k) + distance(value, blank);
+    int newHamming = hamming - (value != k + 1 ? 1 : 0) + (value != blank + 1 ? 1 : 0);
+
+    return new PackedBoard(newLow, newHigh, N, k, newHamming, newManhattan);
+  }
+
+  // board dimension N
+  public int dimension() {
+    return N;
+  }
+
+  // block in row i, column j (0-based), 0 for the blank
+  public int tileAt(int i, int j) {
+    if (i < 0 || i >= N || j < 0 || j >= N)
+      throw new java.lang.IndexOutOfBoundsException();
+
+    return tile(i * N + j);
+  }
+
+  // number of blocks out of place, counted from the tiles
+  private int scanHamming() {
+    int distance = 0;
+
+    for (int k = 0; k < N * N; k++) {
+      int value = tile(k);
+      if (value != 0 && value != k + 1) distance++;
+    }
+
+    return distance;
+  }
+
+  // sum of Manhattan distances between blocks and goal, counted from the tiles
+  private int scanManhattan() {
+    int distance = 0;
+
+    for (int k = 0; k < N * N; k++) {
+      int value = tile(k);
+      if (value != 0) distance += distance(value, k);
+    }
+
+    return distance;
+  }
+
+  // number of blocks out of place
+  public int hamming() {
+    return hamming;
+  }
+
+  // sum of Manhattan distances between blocks and goal
+  public int manhattan() {
+    return manhattan;
+  }
+
+  // row-major index of the blank
+  public int blankIndex() {
+    return blank;
+  }
+
+  // 64-bit key of the blocks: up to 4x4, where the high word is 0, a
+  // bijection of the low word; for 5x5 the low word is mixed before the high
+  // word is folded in and mixed again, so the key behaves like a random
+  // 64-bit hash of the whole board
+  public long key() {
+    if (N <= 4)
+      return low * 0x9E3779B97F4A7C15L;
+
+    return mix(mix(low) ^ high);
+  }
+
+  // the SplitMix64 finalizer, a bijection on longs
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  // is this board the goal board?
+  public boolean isGoal() {
+    return hamming() == 0;
+  }
+
+  // a board that is obtained by exchanging two adjacent blocks in the same row
+  public PackedBoard twin() {
+    for (int k = 0; k < N * N; k++) {
+      if (k == blank) continue;
+
+      int other = -1;
+      if (k % N != 0 && k - 1 != blank) other = k - 1; // LEFT
+      else if (k % N != N - 1 && k + 1 != blank) other = k + 1; // RIGHT
+
+      if (other >= 0) {
+        long a = tile(k);
+        long b = tile(other);
+        long swapped = a ^ b; // XOR in at both places swaps the two values
+
+        return new PackedBoard(low ^ lowPart(N, swapped, k) ^ lowPart(N, swapped, other),
+                               high ^ highPart(N, swapped, k) ^ highPart(N, swapped, other), N, blank);
+      }
+    }
+
+    return this; // a 1-by-1 board has no pair to exchange
+  }
+
+  // does this board equal y?
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+
+    if (o == null || o.getClass() != this.getClass())
+      return false;
+
+    PackedBoard that = (PackedBoard) o;
+    return this.low == that.low && this.high == that.high && this.N == that.N;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(key());
+  }
+
+  // all neighboring boards
+  public Iterable<PackedBoard> neighbors() {
+    Stack<PackedBoard> boardStack = new Stack<PackedBoard>();
+
+    if (blank >= N) boardStack.push(slide(blank - N)); // TOP
+    if (blank < N * N - N) boardStack.push(slide(blank + N)); // BOTTOM
+    if (blank % N != 0) boardStack.push(slide(blank - 1)); // LEFT
+    if (blank % N != N - 1) boardStack.push(slide(blank + 1)); // RIGHT
+
+    return boardStack;
+  }
+
+  // string representation of this board, in the same format as Board
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    s.append(N + "\n");
+    for (int i = 1; i <= N * N; i++) {
+      s.append(String.format("%2d ", tile(i - 1)));
+
+      if (i % N == 0) {
+        s.append("\n");
+      }
+    }
+    return s.toString();
+  }
+
+  // unit tests: check the packed boards against Board, then time the
+  // neighbor generation of both
+  public static void main(String[] args) {
+    int[][] initialBlocks = new int[][] {{8, 0, 3}, {4, 1, 2}, {7, 6, 5}};
+
+    PackedBoard board = new PackedBoard(initialBlocks);
+    Board reference = new Board(initialBlocks);
+
+    System.out.println(board);
+    System.out.println(board.hamming() + " " + reference.hamming());
+    System.out.println(board.manhattan() + " " + reference.manhattan());
+    System.out.println(board.twin());
+
+    for (PackedBoard neighbor : board.neighbors()) {
+      System.out.println(neighbor);
+    }
+
+    // a 5x5 board exercises the tile that straddles the two words
+    int[][] blocks5x5 = new int[5][5];
+    for (int k = 0; k < 25; k++)
+      blocks5x5[k / 5][k % 5] = (k + 1) % 25;
+
+    PackedBoard goal5x5 = new PackedBoard(blocks5x5);
+    PackedBoard walked = goal5x5;
+
+    for (int step = 0; step < 1000; step++) {
+      PackedBoard next = null;
+      int choice = StdRandom.uniform(4);
+      for (PackedBoard neighbor : walked.neighbors()) {
+        if (next == null || choice-- > 0) next = neighbor;
+      }
+      walked = next;
+    }
+
+    System.out.println(goal5x5.isGoal() + " " + walked);
+
+    // neighbor throughput against Board on a 4x4 board
+    int[][] blocks4x4 = {{5, 1, 2, 3}, {9, 6, 7, 4}, {13, 10, 11, 8}, {14, 15, 12, 0}};
+    PackedBoard packed = new PackedBoard(blocks4x4);
+    Board plain = new Board(blocks4x4);
+    long sink = 0;
+
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < 1000000; i++)
+        for (Board neighbor : plain.neighbors()) sink += neighbor.dimension();
+      long middle = System.nanoTime();
+      for (int i = 0; i < 1000000; i++)
+        for (PackedBoard neighbor : packed.neighbors()) sink += neighbor.hashCode();
+      long end = System.nanoTime();
+
+      if (round == 4)
+        StdOut.printf("neighbors(): Board %.1f ns, PackedBoard %.1f ns (%d)%n",
+                      (middle - start) / 1e6, (end - middle) / 1e6, sink & 1);
+    }
+  }
+}
@@ -0,0 +1,28 @@
+
+/**
+ * What Solver's A* needs from a board, so that the same search runs on Board
+ * and on the bit-packed PackedBoard.
+ *
+ * @param <B> the board type itself, which neighbors() and twin() return
+ */
+interface SearchBoard<B extends SearchBoard<B>> {
+
+  // sum of Manhattan distances between blocks and goal
+  int manhattan();
+
+  // is this board the goal board?
+  boolean isGoal();
+
+  // a board that is obtained by exchanging two adjacent blocks in the same row
+  B twin();
+
+  // all neighboring boards
+  Iterable<B> neighbors();
+
+  // row-major index of the blank
+  int blankIndex();
+
+  // 64-bit key of the blocks: equal boards have equal keys, and different
+  // boards almost never do
+  long key();
+}
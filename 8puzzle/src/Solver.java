@@ -1,72 +1,289 @@
 
+/**
+ * Solves the slider puzzle with A* (the default) or IDA*.
+ *
+ * A* runs the same search on the twin board in lockstep: exactly one of the
+ * two is solvable. Boards up to 5x5 are searched as PackedBoards, two longs
+ * each, and only the boards of the solution are built as Boards; larger ones
+ * are searched as Boards.
+ *
+ * Each search keeps a closed set of the keys of the boards it has expanded,
+ * in a LongHashSet: the packed tiles for PackedBoard, the Zobrist hash for
+ * Board. A neighbor whose board is already closed is not queued again, and a
+ * queued node whose board was closed in the meantime is dropped when it is
+ * removed from the queue. Up to 4x4 the keys are exact; beyond that two
+ * different boards sharing a 64-bit key would make the search skip one of
+ * them, which with the number of boards a search can hold in memory is
+ * vanishingly unlikely.
+ *
+ * IDA* decides solvability up front from the parity of the permutation and
+ * then runs depth-first searches with a growing bound on moves + manhattan,
+ * each bound the smallest f that exceeded the previous one. It moves the
+ * blank on a single int[] and undoes each move on the way back, so its memory
+ * is the current path and O(N^2) tables of the board's geometry: no queue, no
+ * closed set, and no boards until solution() builds them. The price is that each iteration
+ * expands the previous ones' boards again, and a board reachable in several
+ * ways is expanded once per way (only undoing the last move is skipped).
+ */
 public class Solver {
 
-  private SearchNode goalNode;
+  public enum Search { A_STAR, IDA_STAR }
+
+  private Board initial;
+  private int[] path; // index the blank moved to at each move of the solution; null if unsolvable
+  private long nodesExpanded;
+  private long duplicatesPruned;
+  private int peakQueueSize;
+  private long[] iterationNodes = new long[0]; // IDA*: boards expanded per bound
 
   // find a solution to the initial board (using the A* algorithm)
   public Solver(Board initial) {
+    this(initial, Search.A_STAR);
+  }
+
+  // find a solution to the initial board with the given algorithm
+  public Solver(Board initial, Search search) {
+    this.initial = initial;
+
+    if (search == Search.IDA_STAR)
+      idaStar();
+    else if (initial.dimension() <= PackedBoard.MAX_DIMENSION)
+      aStar(new PackedBoard(initial.blocks(), initial.dimension()));
+    else
+      aStar(initial);
+  }
 
-    MinPQ<SearchNode> minPQ = new MinPQ<SearchNode>();
-    minPQ.insert(new SearchNode(initial, null, 0));
-    SearchNode currentNode = minPQ.delMin();
+  private <B extends SearchBoard<B>> void aStar(B start) {
 
-    MinPQ<SearchNode> minPQTwin = new MinPQ<SearchNode>();
-    minPQTwin.insert(new SearchNode(initial.twin(), null, 0));
-    SearchNode currentNodeTwin = minPQTwin.delMin();
+    MinPQ<SearchNode<B>> minPQ = new MinPQ<SearchNode<B>>();
+    LongHashSet closed = new LongHashSet();
+    SearchNode<B> currentNode = new SearchNode<B>(start, null, 0);
+    closed.add(start.key());
+
+    B twin = start.twin();
+    MinPQ<SearchNode<B>> minPQTwin = new MinPQ<SearchNode<B>>();
+    LongHashSet closedTwin = new LongHashSet();
+    SearchNode<B> currentNodeTwin = new SearchNode<B>(twin, null, 0);
+    closedTwin.add(twin.key());
 
     while (!(currentNode.getBoard().isGoal()
             || currentNodeTwin.getBoard().isGoal())) {
 
-      // Initial
-      for (Board neighbor : currentNode.getBoard().neighbors()) {
-        if (currentNode.getPreviousNode() != null && neighbor.equals(currentNode.getPreviousNode().getBoard())) {
-          continue;
-        }
+      SearchNode<B> nextNode = expand(currentNode, minPQ, closed);
+      SearchNode<B> nextNodeTwin = expand(currentNodeTwin, minPQTwin, closedTwin);
+
+      peakQueueSize = Math.max(peakQueueSize, minPQ.size() + minPQTwin.size());
+
+      // a small board's search can run out of boards; the other one cannot
+      if (nextNode == null && nextNodeTwin == null)
+        break;
+
+      if (nextNode != null)
+        currentNode = nextNode;
+
+      if (nextNodeTwin != null)
+        currentNodeTwin = nextNodeTwin;
+    }
+
+    if (currentNode.getBoard().isGoal()) {
+      path = new int[currentNode.getMoves()];
+
+      for (SearchNode<B> node = currentNode; node.getPreviousNode() != null; node = node.getPreviousNode()) {
+        path[node.getMoves() - 1] = node.getBoard().blankIndex();
+      }
+    }
+  }
+
+  // is a board with these blocks solvable? Each move of the blank keeps the
+  // parity of the inversions among the blocks for odd N, and for even N keeps
+  // the parity of inversions plus the blank's row; the goal has 0 inversions.
+  // The inversions are counted right to left with a Fenwick tree over the
+  // blocks seen so far, in O(N^2 log N)
+  private static boolean isSolvable(int[] tiles, int N) {
+    int[] seen = new int[tiles.length]; // Fenwick tree, 1-based, over block values
+    long inversions = 0;
+    int blankRow = 0;
+
+    for (int i = tiles.length - 1; i >= 0; i--) {
+      if (tiles[i] == 0) {
+        blankRow = i / N;
+        continue;
+      }
+
+      // blocks to the right of i that are smaller
+      for (int k = tiles[i] - 1; k > 0; k -= k & -k) {
+        inversions += seen[k];
+      }
+
+      for (int k = tiles[i]; k < seen.length; k += k & -k) {
+        seen[k]++;
+      }
+    }
+
+    if (N % 2 == 1)
+      return inversions % 2 == 0;
+
+    return (inversions + blankRow) % 2 == (N - 1) % 2;
+  }
+
+  private void idaStar() {
+    int N = initial.dimension();
+    int[] tiles = initial.blocks();
+
+    if (!isSolvable(tiles, N))
+      return;
+
+    IdaSearch search = new IdaSearch(tiles, N);
+    int bound = initial.manhattan();
+
+    while (true) {
+      search.nodes = 0;
+      int next = search.search(initial.blankIndex(), -1, 0, initial.manhattan(), bound);
+
+      iterationNodes = java.util.Arrays.copyOf(iterationNodes, iterationNodes.length + 1);
+      iterationNodes[iterationNodes.length - 1] = search.nodes;
+      nodesExpanded += search.nodes;
+
+      if (next == IdaSearch.FOUND) {
+        path = java.util.Arrays.copyOf(search.path, search.depth);
+        return;
+      }
 
-        minPQ.insert(new SearchNode(neighbor, currentNode, currentNode.getMoves() + 1));
+      bound = next;
+    }
+  }
+
+  // one depth-first search of IDA*, moving the blank around a single array
+  private static class IdaSearch {
+    private static final int FOUND = -1;
+
+    private final int[] tiles;
+    private final int[][] neighbors; // neighbors[b]: indexes the blank at b can move to
+    private final int[] row; // row[i]: row of index i, and of the goal of block i + 1
+    private final int[] col; // col[i]: column of index i, and of the goal of block i + 1
+    private int[] path = new int[64]; // index the blank moved to at each depth
+    private int depth; // length of the path when the goal was found
+    private long nodes;
+
+    public IdaSearch(int[] tiles, int N) {
+      this.tiles = tiles;
+      this.neighbors = new int[tiles.length][];
+      this.row = new int[tiles.length];
+      this.col = new int[tiles.length];
+
+      for (int b = 0; b < tiles.length; b++) {
+        row[b] = b / N;
+        col[b] = b % N;
+
+        int[] targets = new int[4];
+        int count = 0;
+
+        if (b >= N) targets[count++] = b - N; // TOP
+        if (b < tiles.length - N) targets[count++] = b + N; // BOTTOM
+        if (b % N != 0) targets[count++] = b - 1; // LEFT
+        if (b % N != N - 1) targets[count++] = b + 1; // RIGHT
+
+        neighbors[b] = java.util.Arrays.copyOf(targets, count);
       }
+    }
 
-      if (minPQ.size() > 0) {
-        currentNode = minPQ.delMin();
+    // Manhattan distance of block v at index i from its goal index
+    private int distance(int v, int i) {
+      return Math.abs(row[i] - row[v - 1]) + Math.abs(col[i] - col[v - 1]);
+    }
+
+    // search below the board with the blank at blank, reached in moves moves
+    // with the blank last at previous; returns FOUND, or the smallest
+    // moves + manhattan beyond the bound seen (Integer.MAX_VALUE if none)
+    public int search(int blank, int previous, int moves, int manhattan, int bound) {
+      int f = moves + manhattan;
+      if (f > bound) return f;
+
+      if (manhattan == 0) {
+        depth = moves;
+        return FOUND;
       }
 
-      // Twin
-      for (Board neighbor : currentNodeTwin.getBoard().neighbors()) {
-        if (currentNodeTwin.getPreviousNode() != null && neighbor.equals(currentNodeTwin.getPreviousNode().getBoard())) {
+      nodes++;
+      if (moves == path.length) path = java.util.Arrays.copyOf(path, 2 * path.length);
+
+      int min = Integer.MAX_VALUE;
+
+      for (int target : neighbors[blank]) {
+        if (target == previous) continue;
+
+        int v = tiles[target];
+        int nextManhattan = manhattan - distance(v, target) + distance(v, blank);
+
+        // a child beyond the bound would return at once; skip the call
+        if (moves + 1 + nextManhattan > bound) {
+          min = Math.min(min, moves + 1 + nextManhattan);
           continue;
         }
 
-        minPQTwin.insert(new SearchNode(neighbor, currentNodeTwin, currentNodeTwin.getMoves() + 1));
+        // apply the move, search, undo it
+        tiles[blank] = v;
+        tiles[target] = 0;
+        path[moves] = target;
+
+        int t = search(target, blank, moves + 1, nextManhattan, bound);
+
+        tiles[target] = v;
+        tiles[blank] = 0;
+
+        if (t == FOUND) return FOUND;
+        if (t < min) min = t;
       }
 
-      if (minPQ.size() > 0) {
-        currentNodeTwin = minPQTwin.delMin();
+      return min;
+    }
+  }
+
+  // queue the neighbors of node that are not closed yet, then remove and
+  // close the best queued node that is not closed; null if there is none
+  private <B extends SearchBoard<B>> SearchNode<B> expand(SearchNode<B> node, MinPQ<SearchNode<B>> pq,
+                                                          LongHashSet closed) {
+    nodesExpanded++;
+
+    for (B neighbor : node.getBoard().neighbors()) {
+      if (closed.contains(neighbor.key())) {
+        duplicatesPruned++;
+        continue;
       }
+
+      pq.insert(new SearchNode<B>(neighbor, node, node.getMoves() + 1));
     }
 
-    if (currentNode.getBoard().isGoal()) {
-      goalNode = currentNode;
-    } else {
-      goalNode = null;
+    while (!pq.isEmpty()) {
+      SearchNode<B> next = pq.delMin();
+
+      if (closed.add(next.getBoard().key()))
+        return next;
+
+      duplicatesPruned++; // reached again through a shorter path while it waited
     }
+
+    return null;
   }
 
-  private class SearchNode implements Comparable<SearchNode> {
-    private Board board;
-    private SearchNode previousNode;
+  private static class SearchNode<B extends SearchBoard<B>> implements Comparable<SearchNode<B>> {
+    private B board;
+    private SearchNode<B> previousNode;
     private int moves;
+    private int priority;
 
-    public SearchNode(Board board, SearchNode previousNode, int moves) {
+    public SearchNode(B board, SearchNode<B> previousNode, int moves) {
       this.board = board;
       this.previousNode = previousNode;
       this.moves = moves;
+      this.priority = board.manhattan() + moves;
     }
 
-    public Board getBoard() {
+    public B getBoard() {
       return board;
     }
 
-    public SearchNode getPreviousNode() {
+    public SearchNode<B> getPreviousNode() {
       return previousNode;
     }
 
@@ -75,45 +292,76 @@ public class Solver {
     }
 
     public int getPriority() {
-      return board.manhattan() + moves;
+      return priority;
     }
 
     @Override
-    public int compareTo(SearchNode that) {
-      return (int) Math.signum(this.getPriority() - that.getPriority());
+    public int compareTo(SearchNode<B> that) {
+      return Integer.compare(this.priority, that.priority);
     }
   }
 
   // is the initial board solvable?
   public boolean isSolvable() {
-    return goalNode != null;
+    return path != null;
   }
 
   // min number of moves to solve initial board; -1 if unsolvable
   public int moves() {
     if (isSolvable()) {
-      return goalNode.getMoves();
+      return path.length;
     }
 
     return -1;
   }
 
+  // number of boards expanded; for A* counting both the board and its twin,
+  // for IDA* summed over all iterations
+  public long nodesExpanded() {
+    return nodesExpanded;
+  }
+
+  // number of boards not queued, or dropped from the queue, because they
+  // were already expanded; counting both the board and its twin; 0 for IDA*
+  public long duplicatesPruned() {
+    return duplicatesPruned;
+  }
+
+  // largest number of nodes queued at once, for the board and its twin together;
+  // 0 for IDA*
+  public int peakQueueSize() {
+    return peakQueueSize;
+  }
+
+  // IDA*: number of boards expanded by each iteration, in order of increasing
+  // bound; empty for A*
+  public long[] iterationNodeCounts() {
+    return iterationNodes.clone();
+  }
+
   // sequence of boards in a shortest solution; null if unsolvable
   public Iterable<Board> solution() {
     if (isSolvable()) {
-      Stack<Board> boards = new Stack<Board>();
+      Board[] boards = new Board[path.length + 1];
+      boards[0] = initial;
 
-      for (SearchNode node = goalNode; node != null; node = node.getPreviousNode()) {
-        boards.push(node.getBoard());
+      for (int k = 0; k < path.length; k++) {
+        boards[k + 1] = boards[k].slide(path[k]);
       }
 
-      return boards;
+      Stack<Board> stack = new Stack<Board>();
+      for (int k = boards.length - 1; k >= 0; k--) {
+        stack.push(boards[k]);
+      }
+
+      return stack;
     }
 
     return null;
   }
 
   // solve a slider puzzle (given below)
+  // java Solver puzzle.txt [astar|ida]
   public static void main(String[] args) {
 
     // create initial board from file
@@ -127,7 +375,8 @@ public class Solver {
     Board initial = new Board(blocks);
 
     // solve the puzzle
-    Solver solver = new Solver(initial);
+    boolean ida = args.length > 1 && args[1].equalsIgnoreCase("ida");
+    Solver solver = new Solver(initial, ida ? Search.IDA_STAR : Search.A_STAR);
 
     // print solution to standard output
     if (!solver.isSolvable())
@@ -137,6 +386,14 @@ public class Solver {
       for (Board board : solver.solution())
         StdOut.println(board);
     }
+
+    long[] iterations = solver.iterationNodeCounts();
+    for (int k = 0; k < iterations.length; k++)
+      StdOut.println("iteration " + (k + 1) + ": " + iterations[k] + " nodes expanded");
+
+    StdOut.println("nodes expanded = " + solver.nodesExpanded()
+                   + ", duplicates pruned = " + solver.duplicatesPruned()
+                   + ", peak queue size = " + solver.peakQueueSize());
   }
 
 }
\ No newline at end of file
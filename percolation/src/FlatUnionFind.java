@@ -0,0 +1,142 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Weighted quick-union with path halving, kept in a single flat int[].
+ *
+ * Every entry of the parent array is either the index of its parent, or, for
+ * a root, the negated size of its tree. That gives union by size without a
+ * second array, and path halving keeps find() close to constant amortized time.
+ *
+ * Each root also carries a small set of flag bits which are OR-ed together
+ * when two components merge, so a caller can ask "does this component touch
+ * X?" with a single find(). Parent plus flags cost 5 bytes per element.
+ */
+public class FlatUnionFind {
+
+  private int[] parent; // parent[i] = parent of i, or -(size of tree) if i is a root
+  private byte[] flags; // flags[r] = flag bits of the component rooted at r
+  private int count; // number of components
+
+  // initialize N elements 0 through N-1, each in its own component
+  public FlatUnionFind(int N) {
+    if (N < 0) throw new java.lang.IllegalArgumentException();
+
+    parent = new int[N];
+    Arrays.fill(parent, -1);
+    flags = new byte[N];
+    count = N;
+  }
+
+  private FlatUnionFind(int[] parent, byte[] flags, int count) {
+    this.parent = parent;
+    this.flags = flags;
+    this.count = count;
+  }
+
+  // number of bytes save() writes
+  long savedSize() {
+    return 8 + 5L * parent.length;
+  }
+
+  // write the structure as it is, paths and all, to the buffer
+  void save(ByteBuffer out) {
+    out.putInt(parent.length);
+    out.putInt(count);
+    out.asIntBuffer().put(parent);
+    out.position(out.position() + 4 * parent.length);
+    out.put(flags);
+  }
+
+  // read a structure written by save() from the buffer
+  static FlatUnionFind load(ByteBuffer in) {
+    int N = in.getInt();
+    int count = in.getInt();
+    int[] parent = new int[N];
+    byte[] flags = new byte[N];
+
+    in.asIntBuffer().get(parent);
+    in.position(in.position() + 4 * N);
+    in.get(flags);
+
+    return new FlatUnionFind(parent, flags, count);
+  }
+
+  // number of components
+  public int count() {
+    return count;
+  }
+
+  // root of the component containing p
+  public int find(int p) {
+    while (parent[p] >= 0) {
+      int q = parent[p];
+      int grandparent = parent[q];
+
+      if (grandparent < 0) return q; // q is the root
+
+      parent[p] = grandparent; // path halving: point p at its grandparent
+      p = grandparent;
+    }
+
+    return p;
+  }
+
+  // are p and q in the same component?
+  public boolean connected(int p, int q) {
+    return find(p) == find(q);
+  }
+
+  // number of elements in the component containing p
+  public int size(int p) {
+    return -parent[find(p)];
+  }
+
+  // set the given flag bits on the component containing p
+  public void mark(int p, int flag) {
+    flags[find(p)] |= flag;
+  }
+
+  // flag bits of the component containing p
+  public int flags(int p) {
+    return flags[find(p)];
+  }
+
+  // make p a singleton with no flags again; only valid when every element
+  // of p's component is reset as well, which leaves them all as singletons
+  void reset(int p) {
+    if (parent[p] >= 0) count++;
+
+    parent[p] = -1;
+    flags[p] = 0;
+  }
+
+  // merge the components containing p and q
+  public void union(int p, int q) {
+    int rootP = find(p);
+    int rootQ = find(q);
+
+    if (rootP == rootQ) return;
+
+    link(rootP, rootQ);
+  }
+
+  // merge two distinct components given by their roots, for callers that
+  // already hold both roots; returns the root of the merged component
+  int link(int rootP, int rootQ) {
+    count--;
+
+    // link the smaller tree below the larger one, sizes are stored negated
+    if (parent[rootP] > parent[rootQ]) {
+      parent[rootQ] += parent[rootP];
+      parent[rootP] = rootQ;
+      flags[rootQ] |= flags[rootP];
+      return rootQ;
+    }
+
+    parent[rootP] += parent[rootQ];
+    parent[rootQ] = rootP;
+    flags[rootP] |= flags[rootQ];
+    return rootP;
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * The sites of a percolation lattice and which sites neighbor each other.
+ *
+ * Sites are numbered 0 through sites() - 1. Percolation runs from the sites
+ * for which isTop() holds to those for which isBottom() holds.
+ *
+ * For an interior site every neighbor is the site plus a fixed offset, so
+ * LatticePercolation's hot path is a loop over offsets() with no branching
+ * on the lattice type; only boundary sites go through neighbors(). The plain
+ * N-by-N case keeps its own hard-coded path in Percolation.
+ */
+public abstract class Lattice {
+
+  // number of sites
+  public abstract int sites();
+
+  // is the site on the top face?
+  public abstract boolean isTop(int site);
+
+  // is the site on the bottom face?
+  public abstract boolean isBottom(int site);
+
+  // do all of site + offsets()[k] exist and neighbor the site?
+  public abstract boolean isInterior(int site);
+
+  // index offsets from an interior site to each of its neighbors
+  public abstract int[] offsets();
+
+  // write the neighbors of any site into neighbors, returns how many there are
+  public abstract int neighbors(int site, int[] neighbors);
+
+  // N-by-N square lattice, four neighbors per site
+  public static Lattice square(int N) {
+    return new Square(N);
+  }
+
+  // N-by-N square lattice whose left and right edges wrap around
+  public static Lattice periodic(int N) {
+    return new Periodic(N);
+  }
+
+  // N-by-N triangular lattice, six neighbors per site; each row is shifted
+  // half a site against the one above, so on the square index grid a site
+  // also neighbors (row - 1, column + 1) and (row + 1, column - 1)
+  public static Lattice triangular(int N) {
+    return new Triangular(N);
+  }
+
+  // N-by-N-by-N simple cubic lattice, six neighbors per site,
+  // percolating from the first layer to the last
+  public static Lattice cubic(int N) {
+    return new Cubic(N);
+  }
+
+  private static void precondition(int N, long sites) {
+    if (N <= 0 || sites > Integer.MAX_VALUE)
+      throw new java.lang.IllegalArgumentException();
+  }
+
+  private static class Square extends Lattice {
+    protected final int N;
+    private final int[] offsets;
+
+    public Square(int N) {
+      precondition(N, (long) N * N);
+      this.N = N;
+      this.offsets = new int[] {-N, N, -1, 1};
+    }
+
+    public int sites() {
+      return N * N;
+    }
+
+    public boolean isTop(int site) {
+      return site < N;
+    }
+
+    public boolean isBottom(int site) {
+      return site >= N * N - N;
+    }
+
+    public boolean isInterior(int site) {
+      int column = site % N;
+      return site >= N && site < N * N - N && column > 0 && column < N - 1;
+    }
+
+    public int[] offsets() {
+      return offsets;
+    }
+
+    public int neighbors(int site, int[] neighbors) {
+      int row = site / N;
+      int column = site % N;
+      int count = 0;
+
+      if (row > 0) neighbors[count++] = site - N;
+      if (row < N - 1) neighbors[count++] = site + N;
+      if (column > 0) neighbors[count++] = site - 1;
+      if (column < N - 1) neighbors[count++] = site + 1;
+
+      return count;
+    }
+  }
+
+  private static class Periodic extends Square {
+
+    public Periodic(int N) {
+      super(N);
+    }
+
+    public int neighbors(int site, int[] neighbors) {
+      int row = site / N;
+      int column = site % N;
+      int count = 0;
+
+      if (row > 0) neighbors[count++] = site - N;
+      if (row < N - 1) neighbors[count++] = site + N;
+      if (N > 1) neighbors[count++] = column > 0 ? site - 1 : site + N - 1;
+      if (N > 2) neighbors[count++] = column < N - 1 ? site + 1 : site - N + 1;
+
+      return count;
+    }
+  }
+
+  private static class Triangular extends Square {
+    private final int[] offsets;
+
+    public Triangular(int N) {
+      super(N);
+      this.offsets = new int[] {-N, N, -1, 1, -N + 1, N - 1};
+    }
+
+    public int[] offsets() {
+      return offsets;
+    }
+
+    public int neighbors(int site, int[] neighbors) {
+      int count = super.neighbors(site, neighbors);
+      int row = site / N;
+      int column = site % N;
+
+      if (row > 0 && column < N - 1) neighbors[count++] = site - N + 1;
+      if (row < N - 1 && column > 0) neighbors[count++] = site + N - 1;
+
+      return count;
+    }
+  }
+
+  private static class Cubic extends Lattice {
+    private final int N;
+    private final int layer; // sites per layer, N^2
+    private final int[] offsets;
+
+    public Cubic(int N) {
+      precondition(N, (long) N * N * N);
+      this.N = N;
+      this.layer = N * N;
+      this.offsets = new int[] {-layer, layer, -N, N, -1, 1};
+    }
+
+    public int sites() {
+      return layer * N;
+    }
+
+    public boolean isTop(int site) {
+      return site < layer;
+    }
+
+    public boolean isBottom(int site) {
+      return site >= layer * (N - 1);
+    }
+
+    public boolean isInterior(int site) {
+      int z = site / layer;
+      int y = site % layer / N;
+      int x = site % N;
+      return z > 0 && z < N - 1 && y > 0 && y < N - 1 && x > 0 && x < N - 1;
+    }
+
+    public int[] offsets() {
+      return offsets;
+    }
+
+    public int neighbors(int site, int[] neighbors) {
+      int z = site / layer;
+      int y = site % layer / N;
+      int x = site % N;
+      int count = 0;
+
+      if (z > 0) neighbors[count++] = site - layer;
+      if (z < N - 1) neighbors[count++] = site + layer;
+      if (y > 0) neighbors[count++] = site - N;
+      if (y < N - 1) neighbors[count++] = site + N;
+      if (x > 0) neighbors[count++] = site - 1;
+      if (x < N - 1) neighbors[count++] = site + 1;
+
+      return count;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+import java.util.SplittableRandom;
+
+/**
+ * Site percolation on any Lattice: square, periodic, triangular or cubic.
+ *
+ * Sites are addressed by their 0-based lattice index. Like Percolation it
+ * keeps one FlatUnionFind with top/bottom flags on each root and a bitmap of
+ * open sites; fullness is backwash-free.
+ */
+public class LatticePercolation {
+
+  private static final int TOUCHES_TOP = 1;
+  private static final int TOUCHES_BOTTOM = 2;
+
+  private Lattice lattice;
+  private FlatUnionFind uf;
+  private long[] openSites; // bitmap of open sites, one bit per site
+  private int[] offsets; // the lattice's interior neighbor offsets
+  private int[] neighbors; // scratch space for boundary sites
+  private int openCount;
+  private boolean percolated;
+
+  // create a lattice with all sites blocked
+  public LatticePercolation(Lattice lattice) {
+    this.lattice = lattice;
+    this.uf = new FlatUnionFind(lattice.sites());
+    this.openSites = new long[(lattice.sites() >>> 6) + 1];
+    this.offsets = lattice.offsets().clone();
+    this.neighbors = new int[offsets.length];
+  }
+
+  private void precondition(int site) {
+    if (site < 0 || site >= lattice.sites()) {
+      throw new java.lang.IndexOutOfBoundsException();
+    }
+  }
+
+  private boolean isOpenSite(int site) {
+    return (openSites[site >>> 6] & (1L << site)) != 0;
+  }
+
+  // open the site if it is not open already
+  public void open(int site) {
+    precondition(site);
+
+    if (isOpenSite(site))
+      return;
+
+    openSites[site >>> 6] |= 1L << site;
+    openCount++;
+
+    if (lattice.isTop(site))
+      uf.mark(site, TOUCHES_TOP);
+    if (lattice.isBottom(site))
+      uf.mark(site, TOUCHES_BOTTOM);
+
+    if (lattice.isInterior(site)) {
+      for (int k = 0; k < offsets.length; k++) {
+        int neighbor = site + offsets[k];
+        if (isOpenSite(neighbor))
+          uf.union(site, neighbor);
+      }
+    } else {
+      int count = lattice.neighbors(site, neighbors);
+      for (int k = 0; k < count; k++) {
+        if (isOpenSite(neighbors[k]))
+          uf.union(site, neighbors[k]);
+      }
+    }
+
+    if (uf.flags(site) == (TOUCHES_TOP | TOUCHES_BOTTOM))
+      percolated = true;
+  }
+
+  // is the site open?
+  public boolean isOpen(int site) {
+    precondition(site);
+
+    return isOpenSite(site);
+  }
+
+  // is the site connected to the top face through open sites?
+  public boolean isFull(int site) {
+    precondition(site);
+
+    return isOpenSite(site) && (uf.flags(site) & TOUCHES_TOP) != 0;
+  }
+
+  // number of open sites
+  public int numberOfOpenSites() {
+    return openCount;
+  }
+
+  // does the system percolate?
+  public boolean percolates() {
+    return percolated;
+  }
+
+  // open the sites of a fresh lattice in random order until it percolates,
+  // returns the fraction of sites open at that point
+  private static double threshold(Lattice lattice, SplittableRandom random) {
+    LatticePercolation p = new LatticePercolation(lattice);
+    int[] sites = new int[lattice.sites()];
+
+    for (int k = 0; k < sites.length; k++) {
+      sites[k] = k;
+    }
+
+    for (int k = 0; !p.percolates(); k++) {
+      int j = k + random.nextInt(sites.length - k);
+      int site = sites[j];
+      sites[j] = sites[k];
+      sites[k] = site;
+
+      p.open(site);
+    }
+
+    return (double) p.numberOfOpenSites() / sites.length;
+  }
+
+  // test client: estimates the site threshold of each lattice
+  // java LatticePercolation N T
+  public static void main(String[] args) {
+    int N = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+    int T = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+    SplittableRandom random = new SplittableRandom(StdRandom.uniform(Integer.MAX_VALUE));
+    Lattice[] lattices = {
+      Lattice.square(N), Lattice.periodic(N), Lattice.triangular(N), Lattice.cubic(Math.max(1, N / 4))
+    };
+    String[] names = {"square", "periodic", "triangular", "cubic"};
+
+    for (int l = 0; l < lattices.length; l++) {
+      double sum = 0.0;
+
+      for (int t = 0; t < T; t++) {
+        sum += threshold(lattices[l], random);
+      }
+
+      StdOut.printf("%-12s mean threshold = %.4f%n", names[l], sum / T);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+import java.util.SplittableRandom;
+
+/**
+ * Newman-Ziff sweep for site percolation on an N-by-N grid.
+ *
+ * Every trial opens the sites in the order of a random permutation and
+ * records the number of open sites at which the system first percolates.
+ * Since sites never close, a trial percolates for every n at or beyond that
+ * point, so one pass per trial yields the whole spanning-probability curve
+ * P(n) over all occupation fractions n / N^2, not just the threshold.
+ *
+ * The grid and the permutation buffer are allocated once and reused: after a
+ * trial the opened sites are exactly the first entries of the permutation,
+ * so resetting costs O(opened sites), and the next shuffle continues from
+ * whatever order the buffer is left in.
+ */
+public class NewmanZiff {
+
+  private int N;
+  private int gridSize;
+  private Percolation percolation;
+  private int[] sites; // a permutation of the 0-based row-major site indexes
+  private long[] firstSpanning; // firstSpanning[n] = trials that started to percolate at n open sites
+  private int trials;
+
+  // prepare to run trials on an N-by-N grid
+  public NewmanZiff(int N) {
+    if (N <= 0) throw new java.lang.IllegalArgumentException();
+
+    this.N = N;
+    this.gridSize = N * N;
+    this.percolation = new Percolation(N);
+    this.sites = new int[gridSize];
+    this.firstSpanning = new long[gridSize + 1];
+
+    for (int k = 0; k < gridSize; k++) {
+      sites[k] = k;
+    }
+  }
+
+  // run T more trials with a generator seeded by seed
+  public void run(int T, long seed) {
+    if (T <= 0) throw new java.lang.IllegalArgumentException();
+
+    SplittableRandom random = new SplittableRandom(seed);
+
+    for (int t = 0; t < T; t++) {
+      int opened = 0;
+
+      while (!percolation.percolates()) {
+        int j = opened + random.nextInt(gridSize - opened);
+        int site = sites[j];
+        sites[j] = sites[opened];
+        sites[opened++] = site;
+
+        percolation.open(site);
+      }
+
+      firstSpanning[opened]++;
+      trials++;
+
+      percolation.reset(sites, opened);
+    }
+  }
+
+  // number of trials run so far
+  public int trials() {
+    return trials;
+  }
+
+  // grid dimension N
+  public int dimension() {
+    return N;
+  }
+
+  // curve[n] = fraction of trials that percolate with n sites open,
+  // for n = 0 through N^2; the occupation fraction of entry n is n / N^2
+  public double[] spanningCurve() {
+    if (trials == 0) throw new java.lang.IllegalStateException();
+
+    double[] curve = new double[gridSize + 1];
+    long percolating = 0;
+
+    for (int n = 0; n <= gridSize; n++) {
+      percolating += firstSpanning[n];
+      curve[n] = (double) percolating / trials;
+    }
+
+    return curve;
+  }
+
+  // sample mean of the percolation threshold over all trials
+  public double mean() {
+    if (trials == 0) throw new java.lang.IllegalStateException();
+
+    double sum = 0.0;
+
+    for (int n = 0; n <= gridSize; n++) {
+      sum += (double) n * firstSpanning[n];
+    }
+
+    return sum / trials / gridSize;
+  }
+
+  // probability that the system percolates when every site is open
+  // independently with probability p, obtained by weighting the curve
+  // with the binomial distribution of the number of open sites
+  public double spanningProbability(double p) {
+    if (p < 0.0 || p > 1.0) throw new java.lang.IllegalArgumentException();
+
+    double[] curve = spanningCurve();
+
+    if (p == 0.0) return curve[0];
+    if (p == 1.0) return curve[gridSize];
+
+    // start at the mode of the binomial and walk outwards with the ratio of
+    // neighboring terms, normalizing at the end to stay clear of underflow
+    int mode = (int) Math.min(gridSize, Math.floor((gridSize + 1) * p));
+    double odds = p / (1.0 - p);
+    double total = 1.0;
+    double weighted = curve[mode];
+
+    double term = 1.0;
+    for (int n = mode + 1; n <= gridSize && term > 0.0; n++) {
+      term *= odds * (gridSize - n + 1) / n;
+      total += term;
+      weighted += term * curve[n];
+    }
+
+    term = 1.0;
+    for (int n = mode - 1; n >= 0 && term > 0.0; n--) {
+      term *= (n + 1) / (odds * (gridSize - n));
+      total += term;
+      weighted += term * curve[n];
+    }
+
+    return weighted / total;
+  }
+
+  // test client: java NewmanZiff N T
+  public static void main(String[] args) {
+    int N = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int T = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+    NewmanZiff sweep = new NewmanZiff(N);
+    sweep.run(T, StdRandom.uniform(Integer.MAX_VALUE));
+
+    StdOut.println("mean threshold              = " + sweep.mean());
+
+    for (double p = 0.50; p < 0.70; p += 0.02) {
+      StdOut.printf("P(%.2f)                     = %.4f%n", p, sweep.spanningProbability(p));
+    }
+  }
+}
@@ -1,29 +1,119 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class Percolation {
 
-  private WeightedQuickUnionUF wqu;
-  private boolean[][] sites;
+  // save file layout: magic, version, then the fields written by save()
+  private static final int SAVE_MAGIC = 0x50524347; // "PRCG"
+  private static final int SAVE_VERSION = 1;
+
+  // flag bits kept on each union-find root instead of virtual top/bottom sites
+  private static final int TOUCHES_TOP = 1;
+  private static final int TOUCHES_BOTTOM = 2;
+  private static final int SPANNING = TOUCHES_TOP | TOUCHES_BOTTOM;
+
+  private FlatUnionFind uf;
+  private long[] openSites; // bitmap of open sites, one bit per site index
   private int width;
-  private int virtualTopIndex;
-  private int virtualBottomIndex;
+  private boolean backwashFree; // isFull() ignores paths that go through the bottom row
+  private boolean percolated; // some component touches both the top and the bottom row
+
+  // cluster statistics, updated as sites open and clusters merge
+  private int openCount; // number of open sites
+  private int clusterCount; // number of clusters of open sites
+  private int largestCluster; // size of the largest cluster
+  private int spanningMass; // total size of the clusters touching both the top and bottom row
+  private SizeCounts clusterSizes = new SizeCounts(); // number of clusters of each size
 
   // create N-by-N grid, with all sites blocked
   // Requirement: should take time proportional to N^2
   public Percolation(int N) {
+    this(N, false);
+  }
+
+  // create N-by-N grid, with all sites blocked; when backwashFree is set,
+  // a site is only reported full if it connects to the top row without
+  // passing through the bottom row, even after the system percolates
+  public Percolation(int N, boolean backwashFree) {
     if (N <= 0)
       throw new java.lang.IllegalArgumentException();
 
     int gridSize = N * N;
-    virtualTopIndex = 0;
-    virtualBottomIndex = gridSize + 1;
-    wqu = new WeightedQuickUnionUF(gridSize + 2); // + 2 to include the virtual sites
-    sites = new boolean[N + 1][N + 1]; // ignore the 0th position, start at position 1
+    uf = new FlatUnionFind(gridSize + 1); // site indexes start at 1
+    openSites = new long[(gridSize >>> 6) + 1]; // all bits start cleared, i.e. blocked
     width = N;
+    this.backwashFree = backwashFree;
+  }
 
-    for (int i = 1; i <= N; i++) {
-      for (int j = 1; j <= N; j++) {
-        sites[i][j] = false;
-      }
+  private Percolation() { }
+
+  // Save the grid to a file: a small header with the cluster statistics,
+  // the open-site bitmap and the union-find parent array exactly as they
+  // are. Everything is little-endian and written through a memory mapping,
+  // so loading it back is a few bulk copies rather than N^2 open() calls.
+  public void save(String filename) {
+    long size = 40 + clusterSizes.savedSize() + 8L * openSites.length + uf.savedSize();
+
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if (size > Integer.MAX_VALUE)
+        throw new java.lang.IllegalStateException("grid too large to save in one mapping");
+
+      ByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+
+      out.putInt(SAVE_MAGIC);
+      out.putInt(SAVE_VERSION);
+      out.putInt(width);
+      out.putInt((backwashFree ? 1 : 0) | (percolated ? 2 : 0));
+      out.putInt(openCount);
+      out.putInt(clusterCount);
+      out.putInt(largestCluster);
+      out.putInt(spanningMass);
+      out.putInt(openSites.length);
+      out.putInt(0); // padding, keeps the bitmap 8-byte aligned
+      clusterSizes.save(out);
+      out.asLongBuffer().put(openSites);
+      out.position(out.position() + 8 * openSites.length);
+      uf.save(out);
+    } catch (IOException e) {
+      throw new java.lang.IllegalArgumentException("could not write " + filename, e);
+    }
+  }
+
+  // load a grid written by save()
+  public static Percolation load(String filename) {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+      if (in.getInt() != SAVE_MAGIC || in.getInt() != SAVE_VERSION)
+        throw new java.lang.IllegalArgumentException("not a saved Percolation: " + filename);
+
+      Percolation p = new Percolation();
+      p.width = in.getInt();
+      int flags = in.getInt();
+      p.backwashFree = (flags & 1) != 0;
+      p.percolated = (flags & 2) != 0;
+      p.openCount = in.getInt();
+      p.clusterCount = in.getInt();
+      p.largestCluster = in.getInt();
+      p.spanningMass = in.getInt();
+      p.openSites = new long[in.getInt()];
+      in.getInt(); // padding
+      p.clusterSizes = SizeCounts.load(in);
+      in.asLongBuffer().get(p.openSites);
+      in.position(in.position() + 8 * p.openSites.length);
+      p.uf = FlatUnionFind.load(in);
+
+      return p;
+    } catch (IOException e) {
+      throw new java.lang.IllegalArgumentException("could not read " + filename, e);
     }
   }
 
@@ -41,6 +131,10 @@ public class Percolation {
     return (row - 1) * width + column;
   }
 
+  private boolean isOpenSite(int siteIndex) {
+    return (openSites[siteIndex >>> 6] & (1L << siteIndex)) != 0;
+  }
+
   // open site (row i, column j) if it is not open already
   // Requirement: should take constant time plus a constant number of calls
   // to the union-find methods union(), find(), connected(), and count()
@@ -49,27 +143,144 @@ public class Percolation {
     precondition(i);
     precondition(j);
 
+    openSite(convert2Dto1D(i, j), i, j);
+  }
+
+  // open every site (rows[k], cols[k]); the new sites are collected in a
+  // bitmap first and then connected in one row-major sweep over it, so the
+  // grid and the union-find are walked front to back instead of at random
+  public void openAll(int[] rows, int[] cols) {
+    if (rows.length != cols.length)
+      throw new java.lang.IllegalArgumentException();
+
+    long[] batch = new long[openSites.length]; // sites this call opens
+
+    for (int k = 0; k < rows.length; k++) {
+      precondition(rows[k]);
+      precondition(cols[k]);
+
+      int siteIndex = convert2Dto1D(rows[k], cols[k]);
+
+      if (!isOpenSite(siteIndex))
+        batch[siteIndex >>> 6] |= 1L << siteIndex;
+    }
+
+    for (int w = 0; w < batch.length; w++) {
+      openSites[w] |= batch[w];
+    }
+
+    for (int w = 0; w < batch.length; w++) {
+      for (long word = batch[w]; word != 0; word &= word - 1) {
+        int siteIndex = (w << 6) + Long.numberOfTrailingZeros(word);
+        connect(siteIndex, (siteIndex - 1) / width + 1, (siteIndex - 1) % width + 1, batch);
+      }
+    }
+  }
+
+  // open the site with the given 0-based row-major index, for callers that
+  // generate sites as indexes and have already checked that they are in range
+  void open(int site) {
+    openSite(site + 1, site / width + 1, site % width + 1);
+  }
+
+  // block the first count sites of the given 0-based row-major indexes again;
+  // they must include every open site, so that each cluster is cleared
+  // completely, which makes reusing the grid cost O(count) instead of O(N^2)
+  void reset(int[] sites, int count) {
+    for (int k = 0; k < count; k++) {
+      int siteIndex = sites[k] + 1;
+
+      openSites[siteIndex >>> 6] &= ~(1L << siteIndex);
+      uf.reset(siteIndex);
+    }
+
+    percolated = false;
+    openCount = 0;
+    clusterCount = 0;
+    largestCluster = 0;
+    spanningMass = 0;
+    clusterSizes = new SizeCounts();
+  }
+
+  private void openSite(int siteIndex, int i, int j) {
+
+    // already open, its neighbors were connected when it was opened
+    if (isOpenSite(siteIndex))
+      return;
+
     // open the site
-    if (!sites[i][j])
-      sites[i][j] = true;
+    openSites[siteIndex >>> 6] |= 1L << siteIndex;
 
-    int siteIndex = convert2Dto1D(i, j);
+    connect(siteIndex, i, j, null);
+  }
+
+  // connect a newly opened site to its open neighbors; a bottom or right
+  // neighbor that belongs to the same batch is skipped, it makes that
+  // connection itself when the row-major sweep reaches it
+  private void connect(int siteIndex, int i, int j, long[] batch) {
 
-    // connect virtual top and bottoms
+    // record contact with the top and bottom rows on the site's own root
     if (i == 1)
-      wqu.union(virtualTopIndex, siteIndex);
+      uf.mark(siteIndex, TOUCHES_TOP);
     if (i == width)
-      wqu.union(virtualBottomIndex, siteIndex);
+      uf.mark(siteIndex, TOUCHES_BOTTOM);
+
+    // the site starts out as a cluster of its own
+    openCount++;
+    clusterCount++;
+    clusterSizes.add(1, 1);
+    largestCluster = Math.max(largestCluster, 1);
+    if (width == 1) // the only row is both the top and the bottom row
+      spanningMass++;
 
     // connect to adjacent sides if adjacent node is valid
-    if (isValidSite(i - 1) && isOpen(i - 1, j)) // Top
-      wqu.union(siteIndex, convert2Dto1D(i - 1, j));
-    if (isValidSite(i + 1) && isOpen(i + 1, j)) // Bottom
-      wqu.union(siteIndex, convert2Dto1D(i + 1, j));
-    if (isValidSite(j - 1) && isOpen(i, j - 1)) // Left
-      wqu.union(siteIndex, convert2Dto1D(i, j - 1));
-    if (isValidSite(j + 1) && isOpen(i, j + 1)) // Right
-      wqu.union(siteIndex, convert2Dto1D(i, j + 1));
+    if (i > 1 && isOpenSite(siteIndex - width)) // Top
+      merge(siteIndex, siteIndex - width);
+    if (i < width && isOpenSite(siteIndex + width) && !inBatch(batch, siteIndex + width)) // Bottom
+      merge(siteIndex, siteIndex + width);
+    if (j > 1 && isOpenSite(siteIndex - 1)) // Left
+      merge(siteIndex, siteIndex - 1);
+    if (j < width && isOpenSite(siteIndex + 1) && !inBatch(batch, siteIndex + 1)) // Right
+      merge(siteIndex, siteIndex + 1);
+
+    // a spanning component can only appear through the site just connected
+    if (uf.flags(siteIndex) == SPANNING)
+      percolated = true;
+  }
+
+  // union the clusters of two open sites and update the cluster statistics
+  private void merge(int p, int q) {
+    int rootP = uf.find(p);
+    int rootQ = uf.find(q);
+
+    if (rootP == rootQ)
+      return;
+
+    // size() and flags() of a root do not have to walk any path
+    int sizeP = uf.size(rootP);
+    int sizeQ = uf.size(rootQ);
+    int flagsP = uf.flags(rootP);
+    int flagsQ = uf.flags(rootQ);
+    int size = sizeP + sizeQ;
+
+    uf.link(rootP, rootQ);
+
+    clusterCount--;
+    clusterSizes.add(sizeP, -1);
+    clusterSizes.add(sizeQ, -1);
+    clusterSizes.add(size, 1);
+    largestCluster = Math.max(largestCluster, size);
+
+    if (flagsP == SPANNING)
+      spanningMass -= sizeP;
+    if (flagsQ == SPANNING)
+      spanningMass -= sizeQ;
+    if ((flagsP | flagsQ) == SPANNING)
+      spanningMass += size;
+  }
+
+  private static boolean inBatch(long[] batch, int siteIndex) {
+    return batch != null && (batch[siteIndex >>> 6] & (1L << siteIndex)) != 0;
   }
 
   // is site (row i, column j) open?
@@ -79,7 +290,7 @@ public class Percolation {
     precondition(i);
     precondition(j);
 
-    return sites[i][j];
+    return isOpenSite(convert2Dto1D(i, j));
   }
 
   // is site (row i, column j) full?
@@ -89,7 +300,20 @@ public class Percolation {
     precondition(i);
     precondition(j);
 
-    return wqu.connected(virtualTopIndex, convert2Dto1D(i, j));
+    int siteIndex = convert2Dto1D(i, j);
+
+    if (!isOpenSite(siteIndex))
+      return false;
+
+    int flags = uf.flags(siteIndex);
+
+    if ((flags & TOUCHES_TOP) != 0)
+      return true;
+
+    // with virtual top and bottom sites, once the system percolates every
+    // component touching the bottom row is connected to the top through the
+    // virtual bottom site; keep that behavior unless backwash is disabled
+    return !backwashFree && percolated && (flags & TOUCHES_BOTTOM) != 0;
   }
 
   // does the system percolate?
@@ -97,10 +321,162 @@ public class Percolation {
   // to the union-find methods union(), find(), connected(), and count()
   public boolean percolates() {
 
-    // the virtual top site is connected to all the sites on the top row
-    // the virtual bottom site is connected to all the sites on the bottom row
-    // if the virtual top site is connected to the virtual bottom site,
-    // we say the system percolates
-    return wqu.connected(virtualTopIndex, virtualBottomIndex);
+    // each root knows whether its component touches the top row and the
+    // bottom row; the system percolates as soon as one component touches both
+    return percolated;
+  }
+
+  // number of open sites
+  public int numberOfOpenSites() {
+    return openCount;
+  }
+
+  // number of clusters of open sites
+  public int numberOfClusters() {
+    return clusterCount;
+  }
+
+  // number of sites in the largest cluster, 0 if no site is open
+  public int largestClusterSize() {
+    return largestCluster;
+  }
+
+  // number of sites in clusters that connect the top row to the bottom row,
+  // 0 if the system does not percolate
+  public int spanningClusterMass() {
+    return spanningMass;
+  }
+
+  // cluster size histogram: maps each cluster size to the number of clusters
+  // of that size; takes time proportional to the number of distinct sizes
+  public SortedMap<Integer, Integer> clusterSizeHistogram() {
+    return clusterSizes.toSortedMap();
+  }
+
+  // Number of clusters of each size, in an open-addressing table with linear
+  // probing keyed by size. Clusters of n open sites can have at most about
+  // sqrt(2n) distinct sizes, so the table stays tiny next to the grid, and
+  // updating it on every merge costs no allocation. Most merges absorb a
+  // freshly opened site, so single-site clusters are counted on the side.
+  private static class SizeCounts {
+    private int singletons; // number of clusters of size 1
+    private int[] sizes = new int[16]; // 0 marks an empty slot
+    private int[] counts = new int[16];
+    private int used;
+
+    private int home(int size) {
+      int h = size * 0x9e3779b9;
+      return (h ^ (h >>> 16)) & (sizes.length - 1);
+    }
+
+    // add delta to the number of clusters of the given size
+    public void add(int size, int delta) {
+      if (size == 1) {
+        singletons += delta;
+        return;
+      }
+
+      int slot = home(size);
+
+      while (sizes[slot] != 0 && sizes[slot] != size)
+        slot = (slot + 1) & (sizes.length - 1);
+
+      if (sizes[slot] == 0) {
+        sizes[slot] = size;
+        used++;
+      }
+
+      counts[slot] += delta;
+
+      if (counts[slot] == 0)
+        delete(slot);
+      else if (2 * used > sizes.length)
+        resize(2 * sizes.length);
+    }
+
+    // empty the slot and shift later entries of the probe run back into it
+    private void delete(int slot) {
+      int mask = sizes.length - 1;
+      int next = slot;
+
+      while (true) {
+        next = (next + 1) & mask;
+
+        if (sizes[next] == 0)
+          break;
+
+        int home = home(sizes[next]);
+
+        // move the entry back unless its home lies cyclically in (slot, next]
+        boolean stays = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+
+        if (!stays) {
+          sizes[slot] = sizes[next];
+          counts[slot] = counts[next];
+          slot = next;
+        }
+      }
+
+      sizes[slot] = 0;
+      counts[slot] = 0;
+      used--;
+    }
+
+    private void resize(int capacity) {
+      int[] oldSizes = sizes;
+      int[] oldCounts = counts;
+
+      sizes = new int[capacity];
+      counts = new int[capacity];
+      used = 0;
+
+      for (int k = 0; k < oldSizes.length; k++) {
+        if (oldSizes[k] != 0)
+          add(oldSizes[k], oldCounts[k]);
+      }
+    }
+
+    // number of bytes save() writes, a multiple of 8
+    public long savedSize() {
+      return 8 + 8L * used;
+    }
+
+    public void save(ByteBuffer out) {
+      out.putInt(singletons);
+      out.putInt(used);
+
+      for (int k = 0; k < sizes.length; k++) {
+        if (sizes[k] != 0) {
+          out.putInt(sizes[k]);
+          out.putInt(counts[k]);
+        }
+      }
+    }
+
+    public static SizeCounts load(ByteBuffer in) {
+      SizeCounts sizeCounts = new SizeCounts();
+      sizeCounts.singletons = in.getInt();
+
+      for (int k = in.getInt(); k > 0; k--) {
+        int size = in.getInt();
+        sizeCounts.add(size, in.getInt());
+      }
+
+      return sizeCounts;
+    }
+
+    public SortedMap<Integer, Integer> toSortedMap() {
+      SortedMap<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+
+      if (singletons > 0)
+        histogram.put(1, singletons);
+
+      for (int k = 0; k < sizes.length; k++) {
+        if (sizes[k] != 0)
+          histogram.put(sizes[k], counts[k]);
+      }
+
+      return histogram;
+    }
   }
 }
@@ -0,0 +1,75 @@
+import java.lang.ref.Reference;
+
+/**
+ * Rough benchmarks for the percolation module, run from the command line:
+ *
+ *   java PercolationBenchmark N
+ *
+ * Memory figures are heap deltas around an allocation after forcing a GC,
+ * so they are approximate but good enough to compare layouts.
+ */
+public class PercolationBenchmark {
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void printFootprint(String label, long bytes, long sites) {
+    StdOut.printf("%-40s %,14d bytes  %6.2f bytes/site%n", label, bytes, (double) bytes / sites);
+  }
+
+  // backwash-free fullness: per-root flags vs. a second top-only union-find
+  private static void backwashMemory(int N) {
+    long sites = (long) N * N;
+
+    long before = usedMemory();
+    Percolation flagged = new Percolation(N, true);
+    long flaggedBytes = usedMemory() - before;
+
+    // the two-structure layout: one union-find with virtual top and bottom
+    // sites, a second one with only the virtual top, plus the open bitmap
+    before = usedMemory();
+    int[] withBottom = new int[(int) sites + 2];
+    int[] topOnly = new int[(int) sites + 1];
+    long[] openSites = new long[(int) (sites >>> 6) + 1];
+    long twoStructureBytes = usedMemory() - before;
+
+    StdOut.println("backwash-free memory, N = " + N);
+    printFootprint("  root flags (Percolation)", flaggedBytes, sites);
+    printFootprint("  second top-only union-find", twoStructureBytes, sites);
+
+    // keep both layouts reachable until both have been measured
+    Reference.reachabilityFence(flagged);
+    Reference.reachabilityFence(withBottom);
+    Reference.reachabilityFence(topOnly);
+    Reference.reachabilityFence(openSites);
+  }
+
+  // single-threaded trial throughput of each sampling mode
+  private static void samplingThroughput(int N, int T) {
+    StdOut.println("trial throughput, N = " + N + ", T = " + T);
+
+    for (PercolationStats.Sampling sampling : PercolationStats.Sampling.values()) {
+      new PercolationStats(N, Math.max(1, T / 10), 1L, 1, sampling); // warm up
+
+      long start = System.nanoTime();
+      PercolationStats stats = new PercolationStats(N, T, 42L, 1, sampling);
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      StdOut.printf("  %-12s %10.1f trials/s  mean = %.6f%n", sampling, T / seconds, stats.mean());
+    }
+  }
+
+  public static void main(String[] args) {
+    int N = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+    backwashMemory(N);
+    samplingThroughput(Math.min(N, 500), 200);
+  }
+}
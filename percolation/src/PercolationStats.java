@@ -1,68 +1,397 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class PercolationStats {
 
-  private double[] percolationThreshold;
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  // how a trial picks the next site to open
+  public enum Sampling {
+    REJECTION, // draw a random row and column, skip sites that are already open
+    PERMUTATION // walk a random permutation of the sites, every draw opens a new site
+  }
+
+  // trials run in batches of this size; results are folded into the running
+  // statistics in trial order after each batch, which keeps them independent
+  // of the thread count and bounds memory by the batch, not by T
+  private static final int BATCH_SIZE = 256;
+
+  // checkpoint file layout: magic, version, then the fields written by checkpoint()
+  private static final int CHECKPOINT_MAGIC = 0x50435354; // "PCST"
+  private static final int CHECKPOINT_VERSION = 1;
+
+  // the experiment
+  private int N;
+  private int maxT; // number of experiments to run at most
+  private double epsilon; // stop early once the confidence half-width drops below this
+  private long seed;
+  private Sampling sampling;
+
+  // the results so far
   private int totalExperiments; // number of experiments
+  private double mean; // running mean of the percolation thresholds
+  private double squaredDeviations; // running sum of squared deviations from the mean
 
   // perform T independent experiments on an N-by-N grid
   public PercolationStats(int N, int T) {
-    if (N <= 0 || T <= 0) throw new java.lang.IllegalArgumentException();
+    this(N, T, StdRandom.uniform(Integer.MAX_VALUE), 1);
+  }
+
+  // perform T independent experiments on an N-by-N grid, see below
+  public PercolationStats(int N, int T, long seed, int threads) {
+    this(N, T, seed, threads, Sampling.REJECTION);
+  }
+
+  // perform T independent experiments on an N-by-N grid, spread over the given
+  // number of worker threads; every trial draws from its own generator derived
+  // from (seed, trial number), so the results depend on the seed only and are
+  // bit-identical for any number of threads
+  public PercolationStats(int N, int T, long seed, int threads, Sampling sampling) {
+    this(N, T, 0.0, seed, sampling);
+    run(threads, null);
+  }
+
+  // perform experiments on an N-by-N grid until the half-width of the 95%
+  // confidence interval drops below epsilon, or until maxT experiments have run
+  public static PercolationStats untilHalfWidth(int N, double epsilon, int maxT,
+                                                long seed, int threads, Sampling sampling) {
+    if (!(epsilon > 0.0)) throw new java.lang.IllegalArgumentException();
+
+    PercolationStats stats = new PercolationStats(N, maxT, epsilon, seed, sampling);
+    stats.run(threads, null);
+    return stats;
+  }
+
+  // like untilHalfWidth(), with epsilon = 0 meaning "run all maxT experiments",
+  // but saves the results to checkpointFile after every batch of trials so
+  // that an interrupted run can be picked up again with resume()
+  public static PercolationStats checkpointed(int N, double epsilon, int maxT, long seed, int threads,
+                                              Sampling sampling, String checkpointFile) {
+    if (!(epsilon >= 0.0)) throw new java.lang.IllegalArgumentException();
+    if (checkpointFile == null) throw new java.lang.NullPointerException();
+
+    PercolationStats stats = new PercolationStats(N, maxT, epsilon, seed, sampling);
+    stats.run(threads, checkpointFile);
+    return stats;
+  }
+
+  // continue the run saved in checkpointFile and keep checkpointing to it;
+  // the final results are bit-identical to those of an uninterrupted run
+  public static PercolationStats resume(String checkpointFile, int threads) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+      if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION)
+        throw new java.lang.IllegalArgumentException("not a PercolationStats checkpoint: " + checkpointFile);
+
+      PercolationStats stats = new PercolationStats(in.readInt(), in.readInt(), in.readDouble(), in.readLong(),
+                                                    Sampling.values()[in.readInt()]);
+      stats.totalExperiments = in.readInt();
+      stats.mean = in.readDouble();
+      stats.squaredDeviations = in.readDouble();
+
+      stats.run(threads, checkpointFile);
+      return stats;
+    } catch (IOException e) {
+      throw new java.lang.IllegalArgumentException("could not read " + checkpointFile, e);
+    }
+  }
+
+  private PercolationStats(int N, int maxT, double epsilon, long seed, Sampling sampling) {
+    if (N <= 0 || maxT <= 0) throw new java.lang.IllegalArgumentException();
+    if (sampling == null) throw new java.lang.NullPointerException();
+
+    this.N = N;
+    this.maxT = maxT;
+    this.epsilon = epsilon;
+    this.seed = seed;
+    this.sampling = sampling;
+  }
+
+  // run the remaining experiments, starting after the ones already counted
+  private void run(int threads, String checkpointFile) {
+    if (threads <= 0) throw new java.lang.IllegalArgumentException();
+
+    double[] batch = new double[Math.min(maxT, BATCH_SIZE)];
+    int grain = Math.max(1, batch.length / (threads * 8)); // a few leaf tasks per thread to balance the load
+    ForkJoinPool pool = new ForkJoinPool(threads);
+
+    // permutation trials reuse one set of buffers per thread for the whole
+    // run, however small the leaf tasks get
+    ThreadLocal<PermutationBuffers> buffers = null;
+    if (sampling == Sampling.PERMUTATION)
+      buffers = ThreadLocal.withInitial(() -> new PermutationBuffers(N));
+
+    try {
+      // the stopping check only runs between batches, so where a run
+      // stops does not depend on the number of threads either
+      for (int lo = totalExperiments; lo < maxT && !isPreciseEnough(); lo += batch.length) {
+        int hi = Math.min(maxT, lo + batch.length);
+
+        pool.invoke(new TrialRange(N, seed, buffers, batch, lo, lo, hi, grain));
+
+        for (int i = lo; i < hi; i++) {
+          add(batch[i - lo]);
+        }
+
+        if (checkpointFile != null)
+          checkpoint(checkpointFile);
+      }
+    } finally {
+      pool.shutdown();
+      if (buffers != null) buffers.remove(); // in case this thread ran trials itself
+    }
+  }
+
+  private boolean isPreciseEnough() {
+    return totalExperiments > 1 && halfWidth() < epsilon;
+  }
+
+  // Write the experiment and the results so far to a temporary file and
+  // move it over checkpointFile, so a crash mid-write keeps the previous one.
+  // Trial i always draws from trialSeed(seed, i), so the seed and the number
+  // of finished trials are all the generator state there is to save.
+  private void checkpoint(String checkpointFile) {
+    Path target = Paths.get(checkpointFile);
+    Path temporary = Paths.get(checkpointFile + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary.toFile())))) {
+      out.writeInt(CHECKPOINT_MAGIC);
+      out.writeInt(CHECKPOINT_VERSION);
+      out.writeInt(N);
+      out.writeInt(maxT);
+      out.writeDouble(epsilon);
+      out.writeLong(seed);
+      out.writeInt(sampling.ordinal());
+      out.writeInt(totalExperiments);
+      out.writeDouble(mean);
+      out.writeDouble(squaredDeviations);
+    } catch (IOException e) {
+      throw new java.lang.IllegalStateException("could not write " + temporary, e);
+    }
+
+    try {
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new java.lang.IllegalStateException("could not replace " + target, e);
+    }
+  }
+
+  // fold one threshold into the running mean and variance (Welford's method)
+  private void add(double threshold) {
+    totalExperiments++;
 
-    this.percolationThreshold = new double[T];
-    this.totalExperiments = T;
+    double delta = threshold - mean;
+    mean += delta / totalExperiments;
+    squaredDeviations += delta * (threshold - mean);
+  }
+
+  // half-width of the 95% confidence interval
+  private double halfWidth() {
+    return 1.96 * stddev() / Math.sqrt(totalExperiments);
+  }
+
+  // the permutation and the grid a thread's permutation trials share; both
+  // are back at the identity and all blocked between trials
+  private static class PermutationBuffers {
+    private final SitePermutation permutation;
+    private final Percolation grid;
+
+    public PermutationBuffers(int N) {
+      permutation = new SitePermutation(N * N);
+      grid = new Percolation(N);
+    }
+  }
+
+  // runs trials lo (inclusive) through hi (exclusive), splitting the range
+  // in half until it is small enough to run sequentially; trial i stores its
+  // threshold in results[i - offset]. Trials sample by permutation when
+  // buffers is not null, and by rejection otherwise
+  private static class TrialRange extends RecursiveAction {
+    private final int N;
+    private final long seed;
+    private final ThreadLocal<PermutationBuffers> buffers;
+    private final double[] results;
+    private final int offset;
+    private final int lo;
+    private final int hi;
+    private final int grain;
+
+    public TrialRange(int N, long seed, ThreadLocal<PermutationBuffers> buffers, double[] results, int offset,
+                      int lo, int hi, int grain) {
+      this.N = N;
+      this.seed = seed;
+      this.buffers = buffers;
+      this.results = results;
+      this.offset = offset;
+      this.lo = lo;
+      this.hi = hi;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo <= grain) {
+        // the permutation buffer and the grid are allocated once per thread
+        // and reset after each trial in O(opened sites)
+        PermutationBuffers mine = buffers == null ? null : buffers.get();
+
+        for (int i = lo; i < hi; i++) {
+          SplittableRandom random = new SplittableRandom(trialSeed(seed, i));
 
+          if (mine == null) {
+            results[i - offset] = runTrial(N, random);
+          } else {
+            results[i - offset] = runTrial(N, random, mine.permutation, mine.grid);
+          }
+        }
+        return;
+      }
+
+      int mid = (lo + hi) >>> 1;
+      invokeAll(new TrialRange(N, seed, buffers, results, offset, lo, mid, grain),
+                new TrialRange(N, seed, buffers, results, offset, mid, hi, grain));
+    }
+  }
+
+  // seed of trial i: the SplitMix64 finalizer over the i-th step of a Weyl
+  // sequence starting at the master seed, so neighboring trials get unrelated streams
+  private static long trialSeed(long seed, int i) {
+    long z = seed + (i + 1) * GOLDEN_GAMMA;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  // randomly open sites until the system percolates,
+  // returns the fraction of sites that are open at that point
+  private static double runTrial(int N, SplittableRandom random) {
+    Percolation p = new Percolation(N);
     double totalOpenSites = 0.0;
     int gridSize = N * N;
 
-    for (int i = 0; i < T; i++) {
-      Percolation p = new Percolation(N);
+    while (!p.percolates()) {
+      int siteRow = random.nextInt(1, N + 1);
+      int siteColumn = random.nextInt(1, N + 1);
 
-      // randomly open sites until it percolates
-      while (!p.percolates()) {
-        int siteRow = StdRandom.uniform(1, N + 1);
-        int siteColumn = StdRandom.uniform(1, N + 1);
+      if (!p.isOpen(siteRow, siteColumn)) {
+        p.open(siteRow, siteColumn);
+        totalOpenSites++;
+      }
+    }
 
-        if (!p.isOpen(siteRow, siteColumn)) {
-          p.open(siteRow, siteColumn);
-          totalOpenSites++;
-        }
+    return totalOpenSites / gridSize;
+  }
+
+  // open the sites of an all-blocked grid in the order of a fresh random
+  // permutation until the system percolates; no draw is wasted on a site that
+  // is already open. The grid and the permutation are handed back blocked and
+  // at the identity again, touching only the sites this trial opened
+  private static double runTrial(int N, SplittableRandom random, SitePermutation permutation, Percolation p) {
+    double totalOpenSites = 0.0;
+    int gridSize = N * N;
+
+    while (!p.percolates()) {
+      p.open(permutation.next(random)); // 0-based, row-major site index
+      totalOpenSites++;
+    }
+
+    p.reset(permutation.sites, permutation.drawn); // the opened sites come first
+    permutation.restart();
+
+    return totalOpenSites / gridSize;
+  }
+
+  // Fisher-Yates shuffle of 0 through n-1, produced one element at a time;
+  // the buffers are allocated once per thread and reused by all its trials
+  private static class SitePermutation {
+    private final int[] sites;
+    private final int[] swaps; // swaps[k]: position swapped into position k
+    private int drawn;
+
+    public SitePermutation(int n) {
+      sites = new int[n];
+      swaps = new int[n];
+
+      for (int k = 0; k < n; k++) {
+        sites[k] = k;
+      }
+    }
+
+    // go back to the identity by undoing the swaps in reverse order, so that
+    // every trial depends on its own generator only; O(drawn), not O(n)
+    public void restart() {
+      for (int k = drawn - 1; k >= 0; k--) {
+        int j = swaps[k];
+        int chosen = sites[k];
+
+        sites[k] = sites[j];
+        sites[j] = chosen;
       }
 
-      percolationThreshold[i] = (totalOpenSites / gridSize) / totalExperiments;
-      totalOpenSites = 0; // reset
+      drawn = 0;
     }
+
+    // swap a uniformly chosen remaining element into the next position and return it
+    public int next(SplittableRandom random) {
+      int k = drawn++;
+      int j = k + random.nextInt(sites.length - k);
+      int chosen = sites[j];
+
+      sites[j] = sites[k];
+      sites[k] = chosen;
+      swaps[k] = j;
+
+      return chosen;
+    }
+  }
+
+  // number of experiments that were run
+  public int trials() {
+    return totalExperiments;
   }
 
   // sample mean of percolation threshold
   public double mean() {
-    return StdStats.mean(percolationThreshold);
+    return mean;
   }
 
   // sample standard deviation of percolation threshold
   public double stddev() {
-    return StdStats.stddev(percolationThreshold);
+    return Math.sqrt(squaredDeviations / (totalExperiments - 1));
   }
 
   // low  endpoint of 95% confidence interval
   public double confidenceLo() {
-    return mean() - (1.96 * stddev() / Math.sqrt(totalExperiments));
+    return mean() - halfWidth();
   }
 
   // high endpoint of 95% confidence interval
   public double confidenceHi() {
-    return mean() + (1.96 * stddev() / Math.sqrt(totalExperiments));
+    return mean() + halfWidth();
   }
 
   // test client (described below)
   public static void main(String[] args) {
 
-    int N = 20;
-    int T = 10;
+    int N = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int T = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
 
-    PercolationStats pStats = new PercolationStats(N, T);
+    PercolationStats pStats = new PercolationStats(N, T, StdRandom.uniform(Integer.MAX_VALUE), threads);
 
     StdOut.println("mean                        = " + pStats.mean());
-    StdOut.println("stddev                      = " + pStats.mean());
+    StdOut.println("stddev                      = " + pStats.stddev());
     StdOut.println("95% confidence interval     = " + pStats.confidenceLo() + ", " + pStats.confidenceHi());
   }
 }
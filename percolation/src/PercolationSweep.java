@@ -0,0 +1,204 @@
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * Estimates percolation thresholds for many (N, model) configurations in one
+ * process and writes them as CSV, one line per configuration:
+ *
+ *   java PercolationSweep minN maxN T [site,bond] [output.csv]
+ *
+ * N doubles from minN up to maxN. The site model opens sites in random order
+ * until the top row connects to the bottom row; the bond model keeps every
+ * site and opens the bonds between neighboring sites instead.
+ *
+ * All configurations share one union-find, one open-site bitmap and one
+ * permutation buffer sized for maxN. A trial only resets what it touched,
+ * so nothing is allocated per trial or per configuration, and every
+ * configuration after the warm-up runs on already compiled code.
+ */
+public class PercolationSweep {
+
+  public enum Model { SITE, BOND }
+
+  private static final int TOUCHES_TOP = 1;
+  private static final int TOUCHES_BOTTOM = 2;
+  private static final int SPANNING = TOUCHES_TOP | TOUCHES_BOTTOM;
+
+  private FlatUnionFind uf; // sites of the current N-by-N grid, row-major
+  private long[] openSites; // bitmap of open sites, site model only
+  private int[] order; // permutation of the sites or bonds of the current grid
+  private int maxN;
+  private int N;
+
+  // allocate buffers large enough for grids up to maxN-by-maxN
+  public PercolationSweep(int maxN) {
+    if (maxN <= 0 || 2L * maxN * maxN > Integer.MAX_VALUE)
+      throw new java.lang.IllegalArgumentException();
+
+    this.maxN = maxN;
+    uf = new FlatUnionFind(maxN * maxN);
+    openSites = new long[((maxN * maxN) >>> 6) + 1];
+    order = new int[2 * maxN * maxN]; // an N-by-N grid has 2N(N-1) bonds
+  }
+
+  // run T trials of the given model on an N-by-N grid and write one CSV line
+  public void run(Model model, int N, int T, long seed, PrintStream out) {
+    if (N <= 0 || N > maxN || T <= 0)
+      throw new java.lang.IllegalArgumentException();
+
+    this.N = N;
+    int elements = model == Model.SITE ? N * N : 2 * N * (N - 1);
+
+    for (int k = 0; k < elements; k++) {
+      order[k] = k;
+    }
+
+    SplittableRandom random = new SplittableRandom(seed);
+    double mean = 0.0;
+    double squaredDeviations = 0.0;
+    long start = System.nanoTime();
+
+    for (int t = 1; t <= T; t++) {
+      double threshold = model == Model.SITE ? siteTrial(random) : bondTrial(random);
+
+      // running mean and variance (Welford's method)
+      double delta = threshold - mean;
+      mean += delta / t;
+      squaredDeviations += delta * (threshold - mean);
+    }
+
+    double millis = (System.nanoTime() - start) / 1e6;
+    double stddev = Math.sqrt(squaredDeviations / (T - 1));
+    double halfWidth = 1.96 * stddev / Math.sqrt(T);
+
+    out.printf("%s,%d,%d,%.6f,%.6f,%.6f,%.6f,%.1f%n", model.name().toLowerCase(), N, T,
+               mean, stddev, mean - halfWidth, mean + halfWidth, millis);
+  }
+
+  private boolean isOpenSite(int site) {
+    return (openSites[site >>> 6] & (1L << site)) != 0;
+  }
+
+  // swap a uniformly chosen one of order[k .. elements-1] into order[k]
+  private int draw(int k, int elements, SplittableRandom random) {
+    int j = k + random.nextInt(elements - k);
+    int element = order[j];
+    order[j] = order[k];
+    order[k] = element;
+    return element;
+  }
+
+  private double siteTrial(SplittableRandom random) {
+    int gridSize = N * N;
+    int opened = 0;
+    boolean percolates = false;
+
+    while (!percolates) {
+      int site = draw(opened++, gridSize, random);
+      int row = site / N;
+      int column = site % N;
+
+      openSites[site >>> 6] |= 1L << site;
+
+      if (row == 0) uf.mark(site, TOUCHES_TOP);
+      if (row == N - 1) uf.mark(site, TOUCHES_BOTTOM);
+
+      if (row > 0 && isOpenSite(site - N)) uf.union(site, site - N);
+      if (row < N - 1 && isOpenSite(site + N)) uf.union(site, site + N);
+      if (column > 0 && isOpenSite(site - 1)) uf.union(site, site - 1);
+      if (column < N - 1 && isOpenSite(site + 1)) uf.union(site, site + 1);
+
+      percolates = uf.flags(site) == SPANNING;
+    }
+
+    // only the opened sites were touched, clear just those
+    for (int k = 0; k < opened; k++) {
+      int site = order[k];
+      openSites[site >>> 6] &= ~(1L << site);
+      uf.reset(site);
+    }
+
+    return (double) opened / gridSize;
+  }
+
+  private double bondTrial(SplittableRandom random) {
+    int horizontal = N * (N - 1); // bonds 0 .. horizontal-1 join a site to its right neighbor
+    int bonds = 2 * horizontal; // the rest join a site to the site below it
+
+    for (int column = 0; column < N; column++) {
+      uf.mark(column, TOUCHES_TOP);
+      uf.mark((N - 1) * N + column, TOUCHES_BOTTOM);
+    }
+
+    // a 1-by-1 grid has no bonds and percolates as it is
+    int opened = 0;
+    boolean percolates = uf.flags(0) == SPANNING;
+
+    while (!percolates) {
+      int bond = draw(opened++, bonds, random);
+      int site;
+      int neighbor;
+
+      if (bond < horizontal) {
+        site = bond / (N - 1) * N + bond % (N - 1);
+        neighbor = site + 1;
+      } else {
+        site = bond - horizontal;
+        neighbor = site + N;
+      }
+
+      uf.union(site, neighbor);
+      percolates = uf.flags(site) == SPANNING;
+    }
+
+    // the union-find was only touched at the ends of the opened bonds and
+    // in the marked top and bottom rows
+    for (int k = 0; k < opened; k++) {
+      int bond = order[k];
+      int site = bond < horizontal ? bond / (N - 1) * N + bond % (N - 1) : bond - horizontal;
+      uf.reset(site);
+      uf.reset(bond < horizontal ? site + 1 : site + N);
+    }
+
+    for (int column = 0; column < N; column++) {
+      uf.reset(column);
+      uf.reset((N - 1) * N + column);
+    }
+
+    return bonds == 0 ? 1.0 : (double) opened / bonds;
+  }
+
+  public static void main(String[] args) throws FileNotFoundException {
+    int minN = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int maxN = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+    int T = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+    String[] modelNames = (args.length > 3 ? args[3] : "site,bond").split(",");
+    PrintStream out = args.length > 4 ? new PrintStream(args[4]) : System.out;
+
+    Model[] models = new Model[modelNames.length];
+    for (int m = 0; m < models.length; m++) {
+      models[m] = Model.valueOf(modelNames[m].trim().toUpperCase());
+    }
+
+    PercolationSweep sweep = new PercolationSweep(maxN);
+    SplittableRandom seeds = new SplittableRandom(StdRandom.uniform(Integer.MAX_VALUE));
+
+    // warm up the trial loops on the smallest grid so the first line is not
+    // dominated by interpretation and compilation
+    PrintStream discard = new PrintStream(java.io.OutputStream.nullOutputStream());
+    for (Model model : models) {
+      sweep.run(model, minN, T, seeds.nextLong(), discard);
+    }
+
+    out.println("model,N,trials,mean,stddev,confidenceLo,confidenceHi,millis");
+
+    for (int N = minN; N <= maxN; N *= 2) {
+      for (Model model : models) {
+        sweep.run(model, N, T, seeds.nextLong(), out);
+      }
+    }
+
+    out.flush();
+  }
+}
@@ -0,0 +1,329 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Percolation check for grids too large for Percolation, e.g. N = 50,000
+ * (2.5 * 10^9 sites).
+ *
+ * Open sites are kept in an off-heap bitset addressed by long indexes, one
+ * bit per site. percolates() cuts the grid into horizontal bands and labels
+ * each band in parallel with a Hoshen-Kopelman style sweep that only keeps
+ * one row of labels, so a band needs O(N) memory no matter how tall it is.
+ * A band reports which of its top-row and bottom-row sites are connected,
+ * and a small union-find over those boundary labels then stitches the bands
+ * together.
+ *
+ * The bitset lives outside the Java heap, so large grids need a matching
+ * -XX:MaxDirectMemorySize (N^2 / 8 bytes). open() is not thread-safe.
+ */
+public class ShardedPercolation {
+
+  private static final int CHUNK_WORDS_LOG = 24; // 2^24 longs = 128MB per buffer
+  private static final int CHUNK_WORDS = 1 << CHUNK_WORDS_LOG;
+  private static final int FILL_WORDS_LOG = 14; // openRandom() fills 2^14 longs (2^20 sites) per task
+
+  private int width;
+  private int bands;
+  private LongBuffer[] chunks; // the open-site bitset, split into direct buffers
+  private boolean checked; // percolated holds the answer for the current sites
+  private boolean percolated;
+
+  // create N-by-N grid, with all sites blocked, checked in one band per core
+  public ShardedPercolation(int N) {
+    this(N, Runtime.getRuntime().availableProcessors());
+  }
+
+  // create N-by-N grid, with all sites blocked, checked in the given number of bands
+  public ShardedPercolation(int N, int bands) {
+    if (N <= 0 || bands <= 0)
+      throw new java.lang.IllegalArgumentException();
+
+    long words = ((long) N * N + 63) >>> 6;
+    int chunkCount = (int) ((words + CHUNK_WORDS - 1) >>> CHUNK_WORDS_LOG);
+
+    this.width = N;
+    this.bands = Math.min(bands, N);
+    this.chunks = new LongBuffer[chunkCount];
+
+    for (int c = 0; c < chunkCount; c++) {
+      long chunkWords = Math.min(CHUNK_WORDS, words - ((long) c << CHUNK_WORDS_LOG));
+      chunks[c] = ByteBuffer.allocateDirect((int) chunkWords * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+  }
+
+  private void precondition(int n) {
+    if (n < 1 || n > width) {
+      throw new java.lang.IndexOutOfBoundsException();
+    }
+  }
+
+  // 0-based row-major index of site (row i, column j)
+  private long convert2Dto1D(int row, int column) {
+    return (long) (row - 1) * width + (column - 1);
+  }
+
+  private boolean get(long site) {
+    long word = site >>> 6;
+    return (chunks[(int) (word >>> CHUNK_WORDS_LOG)].get((int) word & (CHUNK_WORDS - 1)) & (1L << site)) != 0;
+  }
+
+  private void set(long site) {
+    long word = site >>> 6;
+    LongBuffer chunk = chunks[(int) (word >>> CHUNK_WORDS_LOG)];
+    int k = (int) word & (CHUNK_WORDS - 1);
+    chunk.put(k, chunk.get(k) | (1L << site));
+  }
+
+  // copy the open flags of N sites starting at the given site into row,
+  // reading the bitset a word at a time rather than a bit at a time
+  private void readRow(long rowStart, boolean[] row) {
+    long site = rowStart;
+    long end = rowStart + row.length;
+
+    while (site < end) {
+      long word = site >>> 6;
+      long bits = chunks[(int) (word >>> CHUNK_WORDS_LOG)].get((int) word & (CHUNK_WORDS - 1)) >>> site;
+      long stop = Math.min(end, (word + 1) << 6);
+
+      for (; site < stop; site++, bits >>>= 1) {
+        row[(int) (site - rowStart)] = (bits & 1) != 0;
+      }
+    }
+  }
+
+  // open site (row i, column j) if it is not open already
+  public void open(int i, int j) {
+    precondition(i);
+    precondition(j);
+
+    set(convert2Dto1D(i, j));
+    checked = false;
+  }
+
+  // is site (row i, column j) open?
+  public boolean isOpen(int i, int j) {
+    precondition(i);
+    precondition(j);
+
+    return get(convert2Dto1D(i, j));
+  }
+
+  // open every site independently with probability p, in parallel over
+  // fixed ranges of 2^14 words of the bitset, each with its own generator
+  // split from the seed; the ranges do not depend on the number of cores, so
+  // the result depends on the seed only
+  public void openRandom(double p, long seed) {
+    if (p < 0.0 || p > 1.0)
+      throw new java.lang.IllegalArgumentException();
+
+    long sites = (long) width * width;
+    long words = (sites + 63) >>> 6;
+    int tasks = (int) ((words + (1 << FILL_WORDS_LOG) - 1) >>> FILL_WORDS_LOG);
+    SplittableRandom master = new SplittableRandom(seed);
+    SplittableRandom[] randoms = new SplittableRandom[tasks];
+
+    for (int t = 0; t < tasks; t++) {
+      randoms[t] = master.split();
+    }
+
+    // a range never straddles two chunks, since both sizes are powers of two
+    IntStream.range(0, tasks).parallel().forEach(t -> {
+      long firstWord = (long) t << FILL_WORDS_LOG;
+      long lastWord = Math.min(words, firstWord + (1 << FILL_WORDS_LOG));
+      LongBuffer chunk = chunks[(int) (firstWord >>> CHUNK_WORDS_LOG)];
+
+      for (long w = firstWord; w < lastWord; w++) {
+        int k = (int) w & (CHUNK_WORDS - 1);
+        long word = chunk.get(k);
+
+        for (int b = 0; b < 64 && (w << 6) + b < sites; b++) {
+          if (randoms[t].nextDouble() < p)
+            word |= 1L << b;
+        }
+
+        chunk.put(k, word);
+      }
+    });
+
+    checked = false;
+  }
+
+  // does the system percolate?
+  public boolean percolates() {
+    if (!checked) {
+      percolated = check();
+      checked = true;
+    }
+
+    return percolated;
+  }
+
+  private boolean check() {
+    int rowsPerBand = (width + bands - 1) / bands;
+    int bandCount = (width + rowsPerBand - 1) / rowsPerBand;
+
+    BandLabels[] labels = IntStream.range(0, bandCount).parallel()
+        .mapToObj(b -> labelBand(b * rowsPerBand, Math.min(width, (b + 1) * rowsPerBand)))
+        .toArray(BandLabels[]::new);
+
+    // boundary labels of band b are b * 2N through b * 2N + 2N - 1,
+    // followed by a virtual top and a virtual bottom site
+    int labelsPerBand = 2 * width;
+    int virtualTop = bandCount * labelsPerBand;
+    int virtualBottom = virtualTop + 1;
+    FlatUnionFind uf = new FlatUnionFind(virtualBottom + 1);
+
+    for (int c = 0; c < width; c++) {
+      if (labels[0].top[c] >= 0)
+        uf.union(virtualTop, labels[0].top[c]);
+      if (labels[bandCount - 1].bottom[c] >= 0)
+        uf.union(virtualBottom, (bandCount - 1) * labelsPerBand + labels[bandCount - 1].bottom[c]);
+    }
+
+    for (int b = 0; b + 1 < bandCount; b++) {
+      for (int c = 0; c < width; c++) {
+        int above = labels[b].bottom[c];
+        int below = labels[b + 1].top[c];
+
+        if (above >= 0 && below >= 0)
+          uf.union(b * labelsPerBand + above, (b + 1) * labelsPerBand + below);
+      }
+    }
+
+    return uf.connected(virtualTop, virtualBottom);
+  }
+
+  // labels of the open sites in the first and last row of a band, -1 for a
+  // blocked site; two sites share a label iff they are connected inside the band
+  private static class BandLabels {
+    private int[] top;
+    private int[] bottom;
+  }
+
+  // Label rows firstRow (inclusive) through lastRow (exclusive), 0-based.
+  //
+  // Elements 0 .. N-1 stand for the sites of the band's first row, N .. 2N-1
+  // for the previous row and 2N .. 3N-1 for the current row. Unions always
+  // make the smaller root the parent, so a component that reaches the first
+  // row is rooted there and those entries never have to move. After each row
+  // the current row's labels are compacted into the previous-row slots.
+  private BandLabels labelBand(int firstRow, int lastRow) {
+    int N = width;
+    int[] parent = new int[3 * N];
+    int[] roots = new int[N];
+    int[] remap = new int[3 * N];
+    int[] remapStamp = new int[3 * N];
+    boolean[] previousOpen = new boolean[N];
+    boolean[] currentOpen = new boolean[N];
+
+    BandLabels labels = new BandLabels();
+    labels.top = new int[N];
+    labels.bottom = new int[N];
+
+    // first row: label runs of open sites, then let the previous-row
+    // slots point at them so the sweep below can treat it like any other row
+    readRow((long) firstRow * N, previousOpen);
+    for (int c = 0; c < N; c++) {
+      if (previousOpen[c]) {
+        parent[c] = c;
+        if (c > 0 && previousOpen[c - 1])
+          union(parent, c, c - 1);
+        parent[N + c] = c;
+      }
+    }
+
+    for (int row = firstRow + 1; row < lastRow; row++) {
+      readRow((long) row * N, currentOpen);
+
+      for (int c = 0; c < N; c++) {
+        int x = 2 * N + c;
+
+        if (!currentOpen[c])
+          continue;
+
+        parent[x] = x;
+        if (c > 0 && currentOpen[c - 1])
+          union(parent, x, x - 1);
+        if (previousOpen[c])
+          union(parent, x, N + c);
+      }
+
+      // compact: resolve every current-row site to its root first, then give
+      // components that do not reach the first row a fresh previous-row root
+      for (int c = 0; c < N; c++) {
+        if (currentOpen[c])
+          roots[c] = find(parent, 2 * N + c);
+      }
+
+      for (int c = 0; c < N; c++) {
+        if (!currentOpen[c])
+          continue;
+
+        int root = roots[c];
+
+        if (root >= N) {
+          if (remapStamp[root] != row) {
+            remapStamp[root] = row;
+            remap[root] = N + c;
+          }
+          root = remap[root];
+        }
+
+        parent[N + c] = root;
+      }
+
+      boolean[] swap = previousOpen;
+      previousOpen = currentOpen;
+      currentOpen = swap;
+    }
+
+    readRow((long) firstRow * N, currentOpen);
+    for (int c = 0; c < N; c++) {
+      labels.top[c] = currentOpen[c] ? find(parent, c) : -1;
+      labels.bottom[c] = previousOpen[c] ? find(parent, N + c) : -1;
+    }
+
+    return labels;
+  }
+
+  private static int find(int[] parent, int p) {
+    while (parent[p] != p) {
+      parent[p] = parent[parent[p]]; // path halving
+      p = parent[p];
+    }
+
+    return p;
+  }
+
+  private static void union(int[] parent, int p, int q) {
+    int rootP = find(parent, p);
+    int rootQ = find(parent, q);
+
+    if (rootP < rootQ)
+      parent[rootQ] = rootP;
+    else if (rootQ < rootP)
+      parent[rootP] = rootQ;
+  }
+
+  // test client: java -XX:MaxDirectMemorySize=1g ShardedPercolation N p
+  public static void main(String[] args) {
+    int N = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    double p = args.length > 1 ? Double.parseDouble(args[1]) : 0.6;
+
+    ShardedPercolation grid = new ShardedPercolation(N);
+
+    long start = System.nanoTime();
+    grid.openRandom(p, StdRandom.uniform(Integer.MAX_VALUE));
+    double fillSeconds = (System.nanoTime() - start) / 1e9;
+
+    start = System.nanoTime();
+    boolean percolates = grid.percolates();
+    double checkSeconds = (System.nanoTime() - start) / 1e9;
+
+    StdOut.println("percolates                  = " + percolates);
+    StdOut.printf("fill / check                = %.2f s / %.2f s%n", fillSeconds, checkSeconds);
+  }
+}
@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A percolation input file: the grid size N followed by the (row, column)
+ * pairs of the sites to open, as in percolation/resources/*.txt.
+ *
+ * The file is memory-mapped and the integers are parsed straight from the
+ * mapped bytes, so there is no In/Scanner tokenizing or String per number.
+ */
+public class SiteFile {
+
+  private static final int CHUNK_SIZE = 1 << 16;
+
+  private int N;
+  private int[] rows;
+  private int[] cols;
+  private int count; // number of (row, column) pairs read
+
+  // read the given site file
+  public SiteFile(String filename) {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new java.lang.IllegalArgumentException("site file larger than 2GB: " + filename);
+
+      parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (IOException e) {
+      throw new java.lang.IllegalArgumentException("could not read " + filename, e);
+    }
+  }
+
+  private void parse(MappedByteBuffer mapped) {
+    byte[] chunk = new byte[CHUNK_SIZE];
+    int numbers = 0;
+    int value = 0;
+    int digits = 0; // digits of value read so far, 0 between numbers
+
+    rows = new int[16];
+    cols = new int[16];
+
+    // copy the mapping out in chunks, bulk get() is much cheaper than a
+    // bounds-checked get(index) per byte; a number may straddle two chunks
+    for (long offset = 0; mapped.hasRemaining(); offset += chunk.length) {
+      int length = Math.min(chunk.length, mapped.remaining());
+      mapped.get(chunk, 0, length);
+
+      for (int k = 0; k <= length; k++) {
+        boolean endOfNumber = k == length ? !mapped.hasRemaining() : isWhitespace(chunk[k]);
+
+        if (k == length && !endOfNumber)
+          break; // number continues in the next chunk
+
+        if (!endOfNumber) {
+          byte b = chunk[k];
+
+          if (b < '0' || b > '9' || digits == 9)
+            throw new java.lang.IllegalArgumentException("bad number at byte " + (offset + k));
+
+          value = value * 10 + (b - '0');
+          digits++;
+          continue;
+        }
+
+        if (digits == 0)
+          continue;
+
+        if (numbers == 0) {
+          N = value;
+        } else if (numbers % 2 == 1) {
+          if (count == rows.length) {
+            rows = Arrays.copyOf(rows, 2 * count);
+            cols = Arrays.copyOf(cols, 2 * count);
+          }
+
+          rows[count] = value;
+        } else {
+          cols[count++] = value;
+        }
+
+        numbers++;
+        value = 0;
+        digits = 0;
+      }
+    }
+
+    if (numbers == 0 || numbers % 2 == 0)
+      throw new java.lang.IllegalArgumentException("expected N followed by (row, column) pairs");
+
+    rows = Arrays.copyOf(rows, count);
+    cols = Arrays.copyOf(cols, count);
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  // grid dimension N
+  public int dimension() {
+    return N;
+  }
+
+  // number of sites listed in the file
+  public int size() {
+    return count;
+  }
+
+  // a new N-by-N grid with every listed site open
+  public Percolation replay() {
+    Percolation percolation = new Percolation(N);
+    percolation.openAll(rows, cols);
+    return percolation;
+  }
+
+  // test client: java SiteFile filename
+  public static void main(String[] args) {
+    long start = System.nanoTime();
+    SiteFile file = new SiteFile(args[0]);
+    Percolation percolation = file.replay();
+    double millis = (System.nanoTime() - start) / 1e6;
+
+    StdOut.println(file.size() + " sites on a " + file.dimension() + "-by-" + file.dimension() + " grid");
+    StdOut.println("percolates                  = " + percolation.percolates());
+    StdOut.printf("replayed in                 = %.1f ms%n", millis);
+  }
+}
@@ -0,0 +1,286 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A randomized queue that many threads can enqueue to and dequeue from at once.
+ *
+ * The items are spread over several stripes, each a small RandomizedQueue-style
+ * array with its own lock, and every operation only locks the one stripe it
+ * picks, so threads working on different stripes never wait for each other.
+ * Random numbers come from ThreadLocalRandom instead of the shared StdRandom.
+ *
+ * Each operation looks at two random stripes:
+ *
+ *   - enqueue adds to the emptier one, which keeps the stripes within a few
+ *     items of each other;
+ *   - dequeue and sample pick between them in proportion to their sizes and
+ *     then take a uniformly random item of the chosen stripe.
+ *
+ * With balanced stripes that makes every item close to equally likely to be
+ * chosen; it is exactly uniform when all stripes have the same size. Sizes
+ * are read without locking, so size() and the choices above are snapshots.
+ *
+ * @param <Item>
+ */
+public class ConcurrentRandomizedQueue<Item> {
+
+  // one stripe: the array of RandomizedQueue guarded by its own lock
+  private static class Stripe<Item> extends ReentrantLock {
+    private Item[] items = (Item[]) new Object[1];
+    private volatile int N = 0;
+
+    private void resize(int capacity) {
+      Item[] copy = (Item[]) new Object[capacity];
+      System.arraycopy(items, 0, copy, 0, N);
+      items = copy;
+    }
+
+    private void add(Item item) {
+      if (N == items.length) resize(2 * items.length);
+      items[N] = item;
+      N = N + 1;
+    }
+
+    private Item remove(int index) {
+      Item item = items[index];
+      items[index] = items[N - 1]; // move last item into random position
+      items[N - 1] = null; // avoid loitering
+      N = N - 1;
+
+      if (N > 0 && N == items.length / 4) resize(items.length / 2);
+
+      return item;
+    }
+  }
+
+  private final Stripe<Item>[] stripes;
+  private final int mask;
+
+  // construct an empty queue with two stripes per available processor
+  public ConcurrentRandomizedQueue() {
+    this(2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  // construct an empty queue with at least the given number of stripes
+  public ConcurrentRandomizedQueue(int stripeCount) {
+    if (stripeCount <= 0) throw new java.lang.IllegalArgumentException();
+
+    int count = Integer.highestOneBit(stripeCount);
+    if (count < stripeCount) count *= 2;
+
+    stripes = (Stripe<Item>[]) new Stripe[count];
+    mask = count - 1;
+
+    for (int s = 0; s < count; s++) {
+      stripes[s] = new Stripe<Item>();
+    }
+  }
+
+  // is the queue empty?
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  // return the number of items on the queue
+  public int size() {
+    int size = 0;
+
+    for (Stripe<Item> stripe : stripes) {
+      size += stripe.N;
+    }
+
+    return size;
+  }
+
+  // add the item
+  public void enqueue(Item item) {
+    if (item == null) throw new NullPointerException();
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    Stripe<Item> first = stripes[random.nextInt() & mask];
+    Stripe<Item> second = stripes[random.nextInt() & mask];
+    Stripe<Item> stripe = first.N <= second.N ? first : second;
+
+    // rather than wait for a busy stripe, use the other one if it is free
+    if (!stripe.tryLock()) {
+      Stripe<Item> other = stripe == first ? second : first;
+      if (other.tryLock()) {
+        stripe = other;
+      } else {
+        stripe.lock();
+      }
+    }
+
+    try {
+      stripe.add(item);
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  // pick a stripe to take an item from, null if all stripes look empty
+  private Stripe<Item> choose(ThreadLocalRandom random) {
+    Stripe<Item> first = stripes[random.nextInt() & mask];
+    Stripe<Item> second = stripes[random.nextInt() & mask];
+    int sizes = first.N + second.N;
+
+    if (sizes > 0)
+      return random.nextInt(sizes) < first.N ? first : second;
+
+    // both are empty: fall back to the first non-empty stripe from a random start
+    int start = random.nextInt() & mask;
+    for (int s = 0; s < stripes.length; s++) {
+      Stripe<Item> stripe = stripes[(start + s) & mask];
+      if (stripe.N > 0) return stripe;
+    }
+
+    return null;
+  }
+
+  // remove and return a random item, null if the queue is empty
+  public Item poll() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    for (Stripe<Item> stripe = choose(random); stripe != null; stripe = choose(random)) {
+      stripe.lock();
+      try {
+        // another thread may have emptied it since choose() looked
+        if (stripe.N > 0)
+          return stripe.remove(random.nextInt(stripe.N));
+      } finally {
+        stripe.unlock();
+      }
+    }
+
+    return null;
+  }
+
+  // remove and return a random item
+  public Item dequeue() {
+    Item item = poll();
+    if (item == null) throw new NoSuchElementException();
+
+    return item;
+  }
+
+  // return (but do not remove) a random item
+  public Item sample() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    for (Stripe<Item> stripe = choose(random); stripe != null; stripe = choose(random)) {
+      stripe.lock();
+      try {
+        if (stripe.N > 0)
+          return stripe.items[random.nextInt(stripe.N)];
+      } finally {
+        stripe.unlock();
+      }
+    }
+
+    throw new NoSuchElementException();
+  }
+
+  // uniformity test: fill the queue with 0 .. n-1 from several threads,
+  // dequeue one item, repeat; the chi-square statistic of how often each
+  // item came out first should be close to its n - 1 degrees of freedom
+  private static void uniformity(int n, int trials, int threads) throws InterruptedException {
+    int[] counts = new int[n];
+
+    for (int t = 0; t < trials; t++) {
+      ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<Integer>(threads);
+      AtomicInteger next = new AtomicInteger();
+      Thread[] producers = new Thread[threads];
+
+      for (int k = 0; k < threads; k++) {
+        producers[k] = new Thread(() -> {
+          for (int i = next.getAndIncrement(); i < n; i = next.getAndIncrement())
+            queue.enqueue(i);
+        });
+        producers[k].start();
+      }
+
+      for (Thread producer : producers) {
+        producer.join();
+      }
+
+      counts[queue.dequeue()]++;
+    }
+
+    double expected = (double) trials / n;
+    double chiSquare = 0.0;
+
+    for (int count : counts) {
+      chiSquare += (count - expected) * (count - expected) / expected;
+    }
+
+    // 99.9th percentile of chi-square, Wilson-Hilferty approximation
+    double dof = n - 1;
+    double z = 3.09;
+    double limit = dof * Math.pow(1 - 2 / (9 * dof) + z * Math.sqrt(2 / (9 * dof)), 3);
+
+    StdOut.printf("uniformity: %d items, %d trials, chi-square %.1f (%d dof, limit %.1f)%n",
+                  n, trials, chiSquare, n - 1, limit);
+
+    if (chiSquare > limit)
+      throw new IllegalStateException("dequeue is far from uniform");
+  }
+
+  // stress test: threads enqueue distinct items and dequeue concurrently;
+  // every item must come out exactly once
+  private static void stress(int itemsPerThread, int threads) throws InterruptedException {
+    ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<Integer>();
+    AtomicIntegerArray seen = new AtomicIntegerArray(itemsPerThread * threads);
+    Thread[] workers = new Thread[threads];
+
+    for (int k = 0; k < threads; k++) {
+      int first = k * itemsPerThread;
+      workers[k] = new Thread(() -> {
+        for (int i = 0; i < itemsPerThread; i++) {
+          queue.enqueue(first + i);
+
+          if (i % 2 == 1) {
+            Integer item = queue.poll();
+            if (item != null) seen.incrementAndGet(item);
+          }
+        }
+      });
+      workers[k].start();
+    }
+
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    for (Integer item = queue.poll(); item != null; item = queue.poll()) {
+      seen.incrementAndGet(item);
+    }
+
+    for (int i = 0; i < seen.length(); i++) {
+      if (seen.get(i) != 1)
+        throw new IllegalStateException("item " + i + " came out " + seen.get(i) + " times");
+    }
+
+    StdOut.println("stress: " + threads + " threads, " + seen.length() + " items, each dequeued once");
+  }
+
+  // unit testing
+  public static void main(String[] args) throws InterruptedException {
+    ConcurrentRandomizedQueue<String> queue = new ConcurrentRandomizedQueue<String>();
+
+    queue.enqueue("A");
+    queue.enqueue("B");
+    queue.enqueue("C");
+
+    StdOut.println(queue.size() + " items, sample " + queue.sample());
+
+    while (!queue.isEmpty()) {
+      StdOut.println(queue.dequeue());
+    }
+
+    uniformity(100, 100000, 4);
+    stress(200000, 8);
+  }
+}
@@ -1,25 +1,32 @@
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A double-ended queue or deque (pronounced "deck") is a generalization of a stack
  * and a queue that supports adding and removing items from either the front or the
  * back of the data structure.
  *
+ * The items live in a circular array whose capacity is always a power of two,
+ * so wrapping an index around is a mask instead of a modulo. The array doubles
+ * when it fills up and halves when it drops to a quarter full, which keeps
+ * every operation amortized constant time without allocating per item.
+ * The bulk operations and the spliterator work on whole ranges of the array
+ * at a time.
+ *
  * @param <Item>
  */
 public class Deque<Item> implements Iterable<Item> {
 
-  private Node first;
-  private Node last;
-  private int N = 0; // Represents size of Deque
+  private static final int MIN_CAPACITY = 8;
 
-  private class Node {
-    Item item;
-    Node next;
-    Node prev;
-  }
+  private Item[] items = (Item[]) new Object[MIN_CAPACITY];
+  private int head = 0; // index of the first item
+  private int N = 0; // Represents size of Deque
 
   public Deque() { }
 
@@ -33,34 +40,44 @@ public class Deque<Item> implements Iterable<Item> {
     return N;
   }
 
+  // move the items to a new array of the given capacity, first item at index 0
+  private void resize(int capacity) {
+    assert capacity >= N && Integer.bitCount(capacity) == 1;
+
+    Item[] copy = (Item[]) new Object[capacity];
+    int firstPart = Math.min(N, items.length - head); // items up to the end of the array
+
+    System.arraycopy(items, head, copy, 0, firstPart);
+    System.arraycopy(items, 0, copy, firstPart, N - firstPart);
+
+    items = copy;
+    head = 0;
+  }
+
+  // shrink the array if necessary to preserve memory
+  private void shrinkIfSparse() {
+    if (N > 0 && N == items.length / 4 && items.length > MIN_CAPACITY)
+      resize(items.length / 2);
+  }
+
   // add the item to the front
   public void addFirst(Item item) {
     if (item == null) throw new NullPointerException();
 
-    Node oldFirst = first; // Initially -- will be null
-    first = new Node(); // Initially -- creates actual first node
-    first.item = item;
-    first.next = oldFirst;
+    if (N == items.length) resize(2 * items.length);
 
-    if (isEmpty()) last = first;
-    else           oldFirst.prev = first;
-
-    N++; // Initially -- now becomes 1
+    head = (head - 1) & (items.length - 1);
+    items[head] = item;
+    N++;
   }
 
   // add the item to the end
   public void addLast(Item item) {
     if (item == null) throw new NullPointerException();
 
-    Node oldLast = last;
-    last = new Node();
-    last.item = item;
-    last.next = null;
-    last.prev = oldLast;
-
-    if (isEmpty()) first = last;
-    else           oldLast.next = last;
+    if (N == items.length) resize(2 * items.length);
 
+    items[(head + N) & (items.length - 1)] = item;
     N++;
   }
 
@@ -68,12 +85,12 @@ public class Deque<Item> implements Iterable<Item> {
   public Item removeFirst() {
     if (isEmpty()) throw new NoSuchElementException();
 
-    Item firstItem = first.item;
-    first = first.next; // if there were 2 items before removing, this covers first = last
+    Item firstItem = items[head];
+    items[head] = null; // avoid loitering
+    head = (head + 1) & (items.length - 1);
     N--;
 
-    if (isEmpty()) last = first; // first will be null
-    else           first.prev = null;
+    shrinkIfSparse();
 
     return firstItem;
   }
@@ -82,16 +99,62 @@ public class Deque<Item> implements Iterable<Item> {
   public Item removeLast() {
     if (isEmpty()) throw new NoSuchElementException();
 
-    Item lastItem = last.item;
-    last = last.prev; // if there were 2 items before removing, this covers first = last
+    int last = (head + N - 1) & (items.length - 1);
+    Item lastItem = items[last];
+    items[last] = null; // avoid loitering
     N--;
 
-    if (isEmpty()) first = last; // last will be null
-    else           last.next = null;
+    shrinkIfSparse();
 
     return lastItem;
   }
 
+  // add all the items to the end, in order
+  public void addAllLast(Item[] newItems) {
+    for (Item item : newItems) {
+      if (item == null) throw new NullPointerException();
+    }
+
+    if (N + newItems.length > items.length) {
+      int capacity = items.length;
+      while (capacity < N + newItems.length) capacity *= 2;
+      resize(capacity);
+    }
+
+    int tail = (head + N) & (items.length - 1);
+    int firstPart = Math.min(newItems.length, items.length - tail); // items up to the end of the array
+
+    System.arraycopy(newItems, 0, items, tail, firstPart);
+    System.arraycopy(newItems, firstPart, items, 0, newItems.length - firstPart);
+    N += newItems.length;
+  }
+
+  // remove up to max items from the front into target, starting at index 0;
+  // returns how many were removed
+  public int drainTo(Item[] target, int max) {
+    int count = Math.min(N, Math.min(max, target.length));
+    if (count <= 0) return 0;
+
+    int firstPart = Math.min(count, items.length - head); // items up to the end of the array
+
+    System.arraycopy(items, head, target, 0, firstPart);
+    System.arraycopy(items, 0, target, firstPart, count - firstPart);
+    java.util.Arrays.fill(items, head, head + firstPart, null); // avoid loitering
+    java.util.Arrays.fill(items, 0, count - firstPart, null);
+
+    head = (head + count) & (items.length - 1);
+    N -= count;
+
+    // shrink in one step to where the one-at-a-time removals would have left
+    // it; those halve all the way down to MIN_CAPACITY on the way to empty
+    int capacity = items.length;
+    if (N == 0) capacity = Math.min(capacity, MIN_CAPACITY);
+    while (N > 0 && N <= capacity / 4 && capacity > MIN_CAPACITY) capacity /= 2;
+    if (capacity != items.length) resize(capacity);
+
+    return count;
+  }
+
   // return an iterator over items in order from front to end
   public Iterator<Item> iterator() {
     return new DequeIterator();
@@ -99,18 +162,16 @@ public class Deque<Item> implements Iterable<Item> {
 
   private class DequeIterator implements Iterator<Item> {
 
-    private Node current = first;
+    private int current = 0; // position relative to head
 
     public boolean hasNext() {
-      return current != null;
+      return current < N;
     }
 
     public Item next() {
       if (!hasNext()) throw new NoSuchElementException();
 
-      Item item = current.item;
-      current = current.next;
-      return item;
+      return items[(head + current++) & (items.length - 1)];
     }
 
     public void remove() {
@@ -118,6 +179,62 @@ public class Deque<Item> implements Iterable<Item> {
     }
   }
 
+  // return a spliterator over items in order from front to end; it knows its
+  // exact size and splits in half, so parallel streams divide the work evenly
+  public Spliterator<Item> spliterator() {
+    return new DequeSpliterator(0, N);
+  }
+
+  // return a sequential stream of the items in order from front to end
+  public Stream<Item> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  private class DequeSpliterator implements Spliterator<Item> {
+
+    private int current; // position relative to head
+    private final int end; // one past the last position relative to head
+
+    public DequeSpliterator(int current, int end) {
+      this.current = current;
+      this.end = end;
+    }
+
+    public boolean tryAdvance(Consumer<? super Item> action) {
+      if (current >= end) return false;
+
+      action.accept(items[(head + current++) & (items.length - 1)]);
+      return true;
+    }
+
+    public void forEachRemaining(Consumer<? super Item> action) {
+      Item[] a = items;
+      int mask = a.length - 1;
+
+      for (int k = current; k < end; k++) {
+        action.accept(a[(head + k) & mask]);
+      }
+      current = end;
+    }
+
+    public Spliterator<Item> trySplit() {
+      int middle = (current + end) >>> 1;
+      if (middle <= current) return null;
+
+      Spliterator<Item> prefix = new DequeSpliterator(current, middle);
+      current = middle;
+      return prefix;
+    }
+
+    public long estimateSize() {
+      return end - current;
+    }
+
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+  }
+
   // unit testing
   public static void main(String[] args) {
 
@@ -158,5 +275,21 @@ public class Deque<Item> implements Iterable<Item> {
     for (int i = 0; i < 50; i++) {
       StdOut.println(dq1.removeLast());
     }
+
+    Deque<Integer> dq2 = new Deque<Integer>();
+    Integer[] numbers = new Integer[1000000];
+
+    for (int i = 0; i < numbers.length; i++)
+      numbers[i] = i;
+
+    dq2.addFirst(-1);
+    dq2.addAllLast(numbers);
+
+    StdOut.println(dq2.size() + " items, parallel sum " + dq2.stream().parallel().mapToLong(i -> i).sum());
+
+    Integer[] drained = new Integer[numbers.length];
+    int count = dq2.drainTo(drained, drained.length);
+
+    StdOut.println(count + " drained, first " + drained[0] + ", last " + drained[count - 1] + ", " + dq2.size() + " left");
   }
 }
\ No newline at end of file
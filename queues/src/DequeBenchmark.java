@@ -0,0 +1,122 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the ring-buffer Deque with the node-based LinkedDeque, and both
+ * with the unboxed IntDeque:
+ *
+ *   java DequeBenchmark [items]
+ *
+ * Each workload runs a few warm-up rounds before the measured one and
+ * reports the time and the bytes allocated per operation, taken from the
+ * JVM's per-thread allocation counter.
+ */
+public class DequeBenchmark {
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private static final int ROUNDS = 5;
+
+  private static long sink; // consumed results, so the JIT cannot drop the work
+
+  private static void report(String label, long nanos, long bytes, long operations) {
+    StdOut.printf("  %-34s %8.2f ns/op %8.2f bytes/op%n", label,
+                  (double) nanos / operations, (double) bytes / operations);
+  }
+
+  private static void measure(String label, Runnable workload, long operations) {
+    for (int round = 0; round < ROUNDS; round++) {
+      workload.run();
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long bytes = THREADS.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+
+    workload.run();
+
+    long nanos = System.nanoTime() - start;
+    report(label, nanos, THREADS.getThreadAllocatedBytes(threadId) - bytes, operations);
+  }
+
+  public static void main(String[] args) {
+    int items = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    Integer[] values = new Integer[items];
+
+    for (int i = 0; i < items; i++) {
+      values[i] = i;
+    }
+
+    StdOut.println("queue: addLast " + items + ", then removeFirst all");
+    measure("Deque", () -> {
+      Deque<Integer> deque = new Deque<Integer>();
+      for (Integer value : values) deque.addLast(value);
+      while (!deque.isEmpty()) sink += deque.removeFirst();
+    }, 2L * items);
+    measure("LinkedDeque", () -> {
+      LinkedDeque<Integer> deque = new LinkedDeque<Integer>();
+      for (Integer value : values) deque.addLast(value);
+      while (!deque.isEmpty()) sink += deque.removeFirst();
+    }, 2L * items);
+    measure("IntDeque", () -> {
+      IntDeque deque = new IntDeque();
+      for (int i = 0; i < items; i++) deque.addLast(i);
+      while (!deque.isEmpty()) sink += deque.removeFirst();
+    }, 2L * items);
+
+    Integer[] drained = new Integer[items];
+    measure("Deque addAllLast/drainTo", () -> {
+      Deque<Integer> deque = new Deque<Integer>();
+      deque.addAllLast(values);
+      deque.drainTo(drained, items);
+      sink += drained[items - 1];
+    }, 2L * items);
+
+    StdOut.println("steady state: 1000 items, addFirst/removeLast " + items + " times");
+    measure("Deque", () -> {
+      Deque<Integer> deque = new Deque<Integer>();
+      for (int i = 0; i < 1000; i++) deque.addLast(values[i % items]);
+      for (Integer value : values) {
+        deque.addFirst(value);
+        sink += deque.removeLast();
+      }
+    }, 2L * items);
+    measure("LinkedDeque", () -> {
+      LinkedDeque<Integer> deque = new LinkedDeque<Integer>();
+      for (int i = 0; i < 1000; i++) deque.addLast(values[i % items]);
+      for (Integer value : values) {
+        deque.addFirst(value);
+        sink += deque.removeLast();
+      }
+    }, 2L * items);
+    measure("IntDeque", () -> {
+      IntDeque deque = new IntDeque();
+      for (int i = 0; i < 1000; i++) deque.addLast(i);
+      for (int i = 0; i < items; i++) {
+        deque.addFirst(i);
+        sink += deque.removeLast();
+      }
+    }, 2L * items);
+
+    StdOut.println("iterate over " + items + " items");
+    Deque<Integer> ring = new Deque<Integer>();
+    LinkedDeque<Integer> linked = new LinkedDeque<Integer>();
+    IntDeque ints = new IntDeque();
+    for (Integer value : values) {
+      ring.addLast(value);
+      linked.addLast(value);
+      ints.addLast(value);
+    }
+    measure("Deque", () -> {
+      for (Integer value : ring) sink += value;
+    }, items);
+    measure("LinkedDeque", () -> {
+      for (Integer value : linked) sink += value;
+    }, items);
+    measure("IntDeque forEach", () -> {
+      ints.forEach(value -> sink += value);
+    }, items);
+
+    StdOut.println("(checksum " + sink + ")");
+  }
+}
@@ -0,0 +1,150 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A deque of int values, the primitive counterpart of Deque<Integer>.
+ *
+ * The values live unboxed in the same kind of power-of-two circular array
+ * Deque uses, so adding and removing never allocates apart from the
+ * occasional resize.
+ */
+public class IntDeque {
+
+  private static final int MIN_CAPACITY = 8;
+
+  private int[] items = new int[MIN_CAPACITY];
+  private int head = 0; // index of the first item
+  private int N = 0; // Represents size of Deque
+
+  public IntDeque() { }
+
+  // is the deque empty?
+  public boolean isEmpty() {
+    return N == 0;
+  }
+
+  // return the number of items on the deque
+  public int size() {
+    return N;
+  }
+
+  // move the items to a new array of the given capacity, first item at index 0
+  private void resize(int capacity) {
+    assert capacity >= N && Integer.bitCount(capacity) == 1;
+
+    int[] copy = new int[capacity];
+    int firstPart = Math.min(N, items.length - head); // items up to the end of the array
+
+    System.arraycopy(items, head, copy, 0, firstPart);
+    System.arraycopy(items, 0, copy, firstPart, N - firstPart);
+
+    items = copy;
+    head = 0;
+  }
+
+  // shrink the array if necessary to preserve memory
+  private void shrinkIfSparse() {
+    if (N > 0 && N == items.length / 4 && items.length > MIN_CAPACITY)
+      resize(items.length / 2);
+  }
+
+  // add the item to the front
+  public void addFirst(int item) {
+    if (N == items.length) resize(2 * items.length);
+
+    head = (head - 1) & (items.length - 1);
+    items[head] = item;
+    N++;
+  }
+
+  // add the item to the end
+  public void addLast(int item) {
+    if (N == items.length) resize(2 * items.length);
+
+    items[(head + N) & (items.length - 1)] = item;
+    N++;
+  }
+
+  // remove and return the item from the front
+  public int removeFirst() {
+    if (isEmpty()) throw new NoSuchElementException();
+
+    int firstItem = items[head];
+    head = (head + 1) & (items.length - 1);
+    N--;
+
+    shrinkIfSparse();
+
+    return firstItem;
+  }
+
+  // remove and return the item from the end
+  public int removeLast() {
+    if (isEmpty()) throw new NoSuchElementException();
+
+    int lastItem = items[(head + N - 1) & (items.length - 1)];
+    N--;
+
+    shrinkIfSparse();
+
+    return lastItem;
+  }
+
+  // apply the action to each item in order from front to end
+  public void forEach(IntConsumer action) {
+    int mask = items.length - 1;
+
+    for (int k = 0; k < N; k++) {
+      action.accept(items[(head + k) & mask]);
+    }
+  }
+
+  // return an iterator over items in order from front to end
+  public PrimitiveIterator.OfInt iterator() {
+    return new IntDequeIterator();
+  }
+
+  private class IntDequeIterator implements PrimitiveIterator.OfInt {
+
+    private int current = 0; // position relative to head
+
+    public boolean hasNext() {
+      return current < N;
+    }
+
+    public int nextInt() {
+      if (!hasNext()) throw new NoSuchElementException();
+
+      return items[(head + current++) & (items.length - 1)];
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  // unit testing
+  public static void main(String[] args) {
+    IntDeque deque = new IntDeque();
+
+    for (int i = 0; i < 50; i++)
+      deque.addFirst(i);
+
+    for (int i = 0; i < 25; i++)
+      StdOut.print(deque.removeLast() + " ");
+    StdOut.println();
+
+    deque.addLast(-1);
+    deque.forEach(i -> StdOut.print(i + " "));
+    StdOut.println();
+
+    for (PrimitiveIterator.OfInt it = deque.iterator(); it.hasNext(); )
+      StdOut.print(it.nextInt() + " ");
+    StdOut.println();
+
+    while (!deque.isEmpty())
+      StdOut.print(deque.removeFirst() + " ");
+    StdOut.println();
+  }
+}
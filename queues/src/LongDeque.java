@@ -0,0 +1,149 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * A deque of long values, the primitive counterpart of Deque<Long>.
+ *
+ * Same layout as IntDeque: an unboxed power-of-two circular array, so
+ * adding and removing never allocates apart from the occasional resize.
+ */
+public class LongDeque {
+
+  private static final int MIN_CAPACITY = 8;
+
+  private long[] items = new long[MIN_CAPACITY];
+  private int head = 0; // index of the first item
+  private int N = 0; // Represents size of Deque
+
+  public LongDeque() { }
+
+  // is the deque empty?
+  public boolean isEmpty() {
+    return N == 0;
+  }
+
+  // return the number of items on the deque
+  public int size() {
+    return N;
+  }
+
+  // move the items to a new array of the given capacity, first item at index 0
+  private void resize(int capacity) {
+    assert capacity >= N && Integer.bitCount(capacity) == 1;
+
+    long[] copy = new long[capacity];
+    int firstPart = Math.min(N, items.length - head); // items up to the end of the array
+
+    System.arraycopy(items, head, copy, 0, firstPart);
+    System.arraycopy(items, 0, copy, firstPart, N - firstPart);
+
+    items = copy;
+    head = 0;
+  }
+
+  // shrink the array if necessary to preserve memory
+  private void shrinkIfSparse() {
+    if (N > 0 && N == items.length / 4 && items.length > MIN_CAPACITY)
+      resize(items.length / 2);
+  }
+
+  // add the item to the front
+  public void addFirst(long item) {
+    if (N == items.length) resize(2 * items.length);
+
+    head = (head - 1) & (items.length - 1);
+    items[head] = item;
+    N++;
+  }
+
+  // add the item to the end
+  public void addLast(long item) {
+    if (N == items.length) resize(2 * items.length);
+
+    items[(head + N) & (items.length - 1)] = item;
+    N++;
+  }
+
+  // remove and return the item from the front
+  public long removeFirst() {
+    if (isEmpty()) throw new NoSuchElementException();
+
+    long firstItem = items[head];
+    head = (head + 1) & (items.length - 1);
+    N--;
+
+    shrinkIfSparse();
+
+    return firstItem;
+  }
+
+  // remove and return the item from the end
+  public long removeLast() {
+    if (isEmpty()) throw new NoSuchElementException();
+
+    long lastItem = items[(head + N - 1) & (items.length - 1)];
+    N--;
+
+    shrinkIfSparse();
+
+    return lastItem;
+  }
+
+  // apply the action to each item in order from front to end
+  public void forEach(LongConsumer action) {
+    int mask = items.length - 1;
+
+    for (int k = 0; k < N; k++) {
+      action.accept(items[(head + k) & mask]);
+    }
+  }
+
+  // return an iterator over items in order from front to end
+  public PrimitiveIterator.OfLong iterator() {
+    return new LongDequeIterator();
+  }
+
+  private class LongDequeIterator implements PrimitiveIterator.OfLong {
+
+    private int current = 0; // position relative to head
+
+    public boolean hasNext() {
+      return current < N;
+    }
+
+    public long nextLong() {
+      if (!hasNext()) throw new NoSuchElementException();
+
+      return items[(head + current++) & (items.length - 1)];
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  // unit testing
+  public static void main(String[] args) {
+    LongDeque deque = new LongDeque();
+
+    for (long i = 0; i < 50; i++)
+      deque.addFirst(i << 32);
+
+    for (int i = 0; i < 25; i++)
+      StdOut.print(deque.removeLast() + " ");
+    StdOut.println();
+
+    deque.addLast(-1L);
+    deque.forEach(i -> StdOut.print(i + " "));
+    StdOut.println();
+
+    for (PrimitiveIterator.OfLong it = deque.iterator(); it.hasNext(); )
+      StdOut.print(it.nextLong() + " ");
+    StdOut.println();
+
+    while (!deque.isEmpty())
+      StdOut.print(deque.removeFirst() + " ");
+    StdOut.println();
+  }
+}
@@ -2,25 +2,67 @@
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+/**
+ * A randomized queue returns a uniformly random item on dequeue and sample.
+ *
+ * The items are kept compact in a resizing array. It doubles when full and,
+ * by default, halves when it drops to a quarter full. Between those two points
+ * the array is left alone, so a size that hovers around either one does not
+ * reallocate on every call. Workloads whose size swings by more than a factor
+ * of two can presize the queue, which also sets the floor the array never
+ * shrinks below, and widen the gap with a larger shrink divisor.
+ *
+ * @param <Item>
+ */
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
+  private static final int DEFAULT_SHRINK_DIVISOR = 4;
+
   private Item[] items;
   private int N = 0; // represents number of items in the array above
+  private final int minCapacity; // the array never shrinks below this on its own
+  private final int shrinkDivisor; // halve the array at 1/shrinkDivisor full, 0 for never
 
   // construct an empty randomized queue
   public RandomizedQueue() {
-    items = (Item[]) new Object[1];
+    this(1);
+  }
+
+  // construct an empty randomized queue with room for initialCapacity items
+  // before it has to grow, and never shrinking below that on its own
+  public RandomizedQueue(int initialCapacity) {
+    this(initialCapacity, DEFAULT_SHRINK_DIVISOR);
+  }
+
+  // as above, halving the array once it is at most 1/shrinkDivisor full;
+  // shrinkDivisor must be at least 3 so a halved array is not full, or 0 to
+  // only shrink through trimToSize()
+  public RandomizedQueue(int initialCapacity, int shrinkDivisor) {
+    if (initialCapacity < 1 || shrinkDivisor < 0 || shrinkDivisor == 1 || shrinkDivisor == 2)
+      throw new java.lang.IllegalArgumentException();
+
+    this.items = (Item[]) new Object[initialCapacity];
+    this.minCapacity = initialCapacity;
+    this.shrinkDivisor = shrinkDivisor;
   }
 
   private void resize(int capacity) {
     assert capacity >= N;
 
-    Item[] copy = (Item[]) new Object[capacity];
+    items = java.util.Arrays.copyOf(items, capacity);
+  }
 
-    for (int i = 0; i < N; i++)
-      copy[i] = items[i];
+  // shrink the array if necessary to preserve memory
+  private void shrinkIfSparse() {
+    int capacity = items.length / 2;
 
-    items = copy;
+    if (shrinkDivisor > 0 && N > 0 && N <= items.length / shrinkDivisor && capacity >= minCapacity)
+      resize(capacity);
+  }
+
+  // shrink the array to exactly the number of items on the queue
+  public void trimToSize() {
+    if (items.length > Math.max(N, 1)) resize(Math.max(N, 1));
   }
 
   // is the queue empty?
@@ -51,8 +93,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     items[N-1] = null; // remove last item to avoid loitering
     N--;
 
-    // shrink array if necessary to preserve memory
-    if (N > 0 && N == items.length/4) resize(items.length/2);
+    shrinkIfSparse();
 
     return item;
   }
@@ -71,6 +112,78 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     return new RandomizeQueueIterator();
   }
 
+  // return an independent iterator over items in pseudorandom order that
+  // needs O(1) memory and no setup, so the first item comes back immediately
+  public Iterator<Item> lazyIterator() {
+    return new PermutationIterator();
+  }
+
+  // Walks the positions 0 .. N-1 in the order of a keyed permutation of
+  // 0 .. 2^(2h)-1, the smallest even power of two >= N: a 4-round Feistel
+  // network on two h-bit halves, which is a bijection for any keys. Positions
+  // >= N are skipped (cycle-walking), at most 3 out of 4 since 2^(2h) < 4N.
+  // The order is as random as the keys and round function make it, not an
+  // exactly uniform draw from all N! permutations.
+  private class PermutationIterator implements Iterator<Item> {
+
+    private final int size = N; // items to visit, fixed when the iterator is created
+    private final int halfBits;
+    private final int halfMask;
+    private final int key0 = StdRandom.uniform(Integer.MAX_VALUE);
+    private final int key1 = StdRandom.uniform(Integer.MAX_VALUE);
+    private final int key2 = StdRandom.uniform(Integer.MAX_VALUE);
+    private final int key3 = StdRandom.uniform(Integer.MAX_VALUE);
+    private long counter = 0; // next input to the permutation
+    private int returned = 0;
+
+    public PermutationIterator() {
+      int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1));
+      halfBits = Math.max(1, (bits + 1) / 2);
+      halfMask = (1 << halfBits) - 1;
+    }
+
+    // the Feistel round function, a murmur-style mix of one half and a key
+    private int round(int half, int key) {
+      int h = (half ^ key) * 0x9E3779B1;
+      h ^= h >>> 15;
+      h *= 0x85EBCA77;
+      h ^= h >>> 13;
+      return h & halfMask;
+    }
+
+    private int permute(int x) {
+      int left = x >>> halfBits;
+      int right = x & halfMask;
+
+      left ^= round(right, key0);
+      right ^= round(left, key1);
+      left ^= round(right, key2);
+      right ^= round(left, key3);
+
+      return (left << halfBits) | right;
+    }
+
+    public boolean hasNext() {
+      return returned < size;
+    }
+
+    public Item next() {
+      if (!hasNext()) throw new NoSuchElementException();
+
+      int position;
+      do {
+        position = permute((int) counter++); // negative past 2^31, skipped as well
+      } while (position < 0 || position >= size);
+
+      returned++;
+      return items[position];
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
   private class RandomizeQueueIterator implements Iterator<Item> {
 
     private int[] randomizedOrder = new int[N];
@@ -126,5 +239,19 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     for (String s : rq1) {
       StdOut.println(s);
     }
+
+    RandomizedQueue<Integer> rq2 = new RandomizedQueue<Integer>();
+    for (int i = 0; i < 1000; i++)
+      rq2.enqueue(i);
+
+    boolean[] seen = new boolean[1000];
+    int count = 0;
+    for (Iterator<Integer> it = rq2.lazyIterator(); it.hasNext(); count++) {
+      int i = it.next();
+      if (seen[i]) throw new IllegalStateException("lazy iterator repeated " + i);
+      seen[i] = true;
+    }
+
+    StdOut.println("lazy iterator visited " + count + " of " + rq2.size() + " items once each");
   }
 }
@@ -0,0 +1,122 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Multi-threaded throughput of a RandomizedQueue shared under one lock
+ * against the striped ConcurrentRandomizedQueue, and the allocation rate of
+ * RandomizedQueue's shrink policies on a workload whose size oscillates:
+ *
+ *   java RandomizedQueueBenchmark [operationsPerThread] [maxThreads]
+ *
+ * Every thread runs enqueue/dequeue pairs on a queue that starts with 1000
+ * items, for 1, 2, 4, ... up to maxThreads threads. Each configuration runs
+ * a few warm-up rounds before the measured one. Allocation is taken from the
+ * JVM's per-thread allocation counter, as in DequeBenchmark.
+ */
+public class RandomizedQueueBenchmark {
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private static final int ROUNDS = 3;
+  private static final int PREFILL = 1000;
+
+  private static long sink; // consumed results, so the JIT cannot drop the work
+
+  // run the workload on the given number of threads, returns the elapsed nanos
+  private static long runThreads(int threads, Runnable workload) throws InterruptedException {
+    Thread[] workers = new Thread[threads];
+    long start = System.nanoTime();
+
+    for (int k = 0; k < threads; k++) {
+      workers[k] = new Thread(workload);
+      workers[k].start();
+    }
+
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  private static void measure(String label, int threads, Runnable workload, long operations)
+      throws InterruptedException {
+    for (int round = 0; round < ROUNDS; round++) {
+      runThreads(threads, workload);
+    }
+
+    long nanos = runThreads(threads, workload);
+    StdOut.printf("  %-28s %2d threads %8.2f Mops/s%n", label, threads, operations * 1e3 / nanos);
+  }
+
+  // grow the queue from low to high items and back, cycles times
+  private static void oscillate(RandomizedQueue<Integer> queue, int low, int high, int cycles) {
+    Integer item = 1;
+
+    while (queue.size() < low) queue.enqueue(item);
+
+    for (int c = 0; c < cycles; c++) {
+      while (queue.size() < high) queue.enqueue(item);
+      while (queue.size() > low) sink += queue.dequeue();
+    }
+  }
+
+  private static void measureAllocation(String label, java.util.function.Supplier<RandomizedQueue<Integer>> queues,
+                                        int low, int high, int cycles) {
+    for (int round = 0; round < ROUNDS; round++) {
+      oscillate(queues.get(), low, high, cycles);
+    }
+
+    RandomizedQueue<Integer> queue = queues.get();
+    long operations = 2L * cycles * (high - low);
+    long threadId = Thread.currentThread().getId();
+    long bytes = THREADS.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+
+    oscillate(queue, low, high, cycles);
+
+    long nanos = System.nanoTime() - start;
+    StdOut.printf("  %-28s %8.2f ns/op %8.2f bytes/op%n", label,
+                  (double) nanos / operations, (double) (THREADS.getThreadAllocatedBytes(threadId) - bytes) / operations);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    StdOut.println("size oscillating between 1000 and 3000, 2000 cycles");
+    measureAllocation("default", () -> new RandomizedQueue<Integer>(), 1000, 3000, 2000);
+    measureAllocation("shrink at 1/8 full", () -> new RandomizedQueue<Integer>(1, 8), 1000, 3000, 2000);
+    measureAllocation("presized to 4096", () -> new RandomizedQueue<Integer>(4096), 1000, 3000, 2000);
+
+    StdOut.println("enqueue/dequeue pairs, " + operations + " operations per thread");
+
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      RandomizedQueue<Integer> locked = new RandomizedQueue<Integer>();
+      ConcurrentRandomizedQueue<Integer> striped = new ConcurrentRandomizedQueue<Integer>();
+
+      for (int i = 0; i < PREFILL; i++) {
+        locked.enqueue(i);
+        striped.enqueue(i);
+      }
+
+      measure("synchronized RandomizedQueue", threads, () -> {
+        for (int i = 0; i < operations / 2; i++) {
+          Integer item;
+          synchronized (locked) {
+            item = locked.dequeue();
+          }
+          synchronized (locked) {
+            locked.enqueue(item);
+          }
+        }
+      }, (long) threads * operations);
+
+      measure("ConcurrentRandomizedQueue", threads, () -> {
+        for (int i = 0; i < operations / 2; i++) {
+          striped.enqueue(striped.dequeue());
+        }
+      }, (long) threads * operations);
+    }
+  }
+}
@@ -1,9 +1,155 @@
 
+import java.io.FileInputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prints k of the strings read from standard input, chosen uniformly at random.
+ *
+ *   java Subset k < input
+ *   java Subset k -reservoir < input
+ *
+ * The default mode keeps every string in a RandomizedQueue. The reservoir mode
+ * keeps only k of them while it streams the input (Algorithm L), so it runs in
+ * O(k) memory however large the input is; it reads standard input as raw bytes
+ * through a channel and never creates a String for a token it skips. Tokens
+ * are separated by ASCII whitespace and control characters.
+ */
 public class Subset {
 
-  public static void main(String args[]) {
+  // whitespace-separated tokens of a byte channel, read through one buffer
+  private static class TokenReader {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private final byte[] bytes = buffer.array();
+    private int position = 0;
+    private int limit = 0;
+    private byte[] token = new byte[64]; // scratch space for a token being kept
+
+    public TokenReader(ReadableByteChannel channel) {
+      this.channel = channel;
+    }
+
+    // refill the buffer, returns false at the end of the input
+    private boolean fill() throws IOException {
+      buffer.clear();
+
+      int read = 0;
+      while (read == 0) {
+        read = channel.read(buffer);
+      }
+
+      position = 0;
+      limit = Math.max(read, 0);
+      return read > 0;
+    }
+
+    private static boolean isSeparator(byte b) {
+      return (b & 0xFF) <= ' ';
+    }
+
+    // move to the start of the next token, returns false if there is none
+    private boolean skipSeparators() throws IOException {
+      while (true) {
+        while (position < limit && isSeparator(bytes[position])) {
+          position++;
+        }
+
+        if (position < limit) return true;
+        if (!fill()) return false;
+      }
+    }
+
+    // skip the next token, returns false if there is none
+    public boolean skip() throws IOException {
+      if (!skipSeparators()) return false;
+
+      while (true) {
+        while (position < limit && !isSeparator(bytes[position])) {
+          position++;
+        }
+
+        if (position < limit || !fill()) return true;
+      }
+    }
+
+    // return the next token, null if there is none
+    public String next() throws IOException {
+      if (!skipSeparators()) return null;
+
+      int length = 0;
+
+      while (true) {
+        int start = position;
+        while (position < limit && !isSeparator(bytes[position])) {
+          position++;
+        }
+
+        int count = position - start;
+        if (length + count > token.length)
+          token = java.util.Arrays.copyOf(token, Math.max(2 * token.length, length + count));
+
+        System.arraycopy(bytes, start, token, length, count);
+        length += count;
+
+        if (position < limit || !fill())
+          return new String(token, 0, length, StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  // k tokens chosen uniformly at random from the reader, in random order
+  // (all of them if there are fewer than k)
+  private static String[] reservoir(int k, TokenReader reader) throws IOException {
+    String[] sample = new String[k];
+    int count = 0;
+
+    while (count < k) {
+      String token = reader.next();
+      if (token == null) return java.util.Arrays.copyOf(sample, count);
+      sample[count++] = token;
+    }
+
+    // Algorithm L: W is the largest of k uniform keys among the tokens so
+    // far; the number of tokens until one beats it is geometric, so skip
+    // straight past them
+    double w = Math.exp(Math.log(1.0 - StdRandom.uniform()) / k);
+
+    while (k > 0) {
+      long skips = (long) Math.floor(Math.log(1.0 - StdRandom.uniform()) / Math.log(1.0 - w));
+
+      for (long s = 0; s < skips; s++) {
+        if (!reader.skip()) {
+          StdRandom.shuffle(sample);
+          return sample;
+        }
+      }
+
+      String token = reader.next();
+      if (token == null) break;
+
+      sample[StdRandom.uniform(k)] = token;
+      w *= Math.exp(Math.log(1.0 - StdRandom.uniform()) / k);
+    }
+
+    StdRandom.shuffle(sample);
+    return sample;
+  }
+
+  public static void main(String args[]) throws IOException {
     int k = Integer.valueOf(args[0]);
 
+    if (args.length > 1 && args[1].equals("-reservoir")) {
+      FileInputStream in = new FileInputStream(FileDescriptor.in);
+      for (String s : reservoir(k, new TokenReader(in.getChannel()))) {
+        StdOut.println(s);
+      }
+      return;
+    }
+
     RandomizedQueue<String> rq = new RandomizedQueue<String>();
 
     while (!StdIn.isEmpty()) {
@@ -0,0 +1,218 @@
+
+import java.util.NoSuchElementException;
+
+/**
+ * A randomized queue whose items are sampled and dequeued with probability
+ * proportional to their weights.
+ *
+ * Like RandomizedQueue the items are kept compact in an array, and dequeue
+ * moves the last item into the freed slot. A Fenwick tree over the weights of
+ * the slots turns a uniform number below the total weight into the slot it
+ * falls in, so enqueue, sample and dequeue are all O(log n). The capacity is
+ * always a power of two, which lets that search walk the tree top-down.
+ *
+ * Weights are doubles, so the tree's sums drift from the exact weights by
+ * rounding error with every update, and removing a heavy item can cancel the
+ * light weights summed into the same nodes altogether. The tree is therefore
+ * rebuilt from the exact weights, in O(capacity), on every resize, after every
+ * capacity updates (amortized O(1) per update), and whenever the total weight
+ * falls below 2^-20 of the weight added since the last rebuild, which is when
+ * cancellation could leave the sums meaningless.
+ *
+ * @param <Item>
+ */
+public class WeightedRandomizedQueue<Item> {
+
+  private Item[] items;
+  private double[] weights; // weights[i] is the weight of items[i]
+  private double[] tree; // Fenwick tree over weights, 1-based
+  private int N = 0; // represents number of items in the arrays above
+  private int updates = 0; // tree updates since the last rebuild
+  private double added = 0.0; // weight summed into the tree since the last rebuild
+
+  // construct an empty weighted randomized queue
+  public WeightedRandomizedQueue() {
+    items = (Item[]) new Object[1];
+    weights = new double[1];
+    tree = new double[2];
+  }
+
+  // move the items to arrays of the given capacity and rebuild the tree in O(capacity)
+  private void resize(int capacity) {
+    assert capacity >= N && Integer.bitCount(capacity) == 1;
+
+    items = java.util.Arrays.copyOf(items, capacity);
+    weights = java.util.Arrays.copyOf(weights, capacity);
+    rebuild();
+  }
+
+  // recompute the tree from the exact weights in O(capacity)
+  private void rebuild() {
+    int capacity = items.length;
+    tree = new double[capacity + 1];
+
+    for (int i = 1; i <= capacity; i++) {
+      tree[i] += weights[i - 1];
+      int parent = i + (i & -i);
+      if (parent <= capacity) tree[parent] += tree[i];
+    }
+
+    updates = 0;
+    added = tree[capacity];
+  }
+
+  // rebuild the tree if rounding error may have built up since the last rebuild
+  private void rebuildIfInexact() {
+    if (updates >= items.length || tree[items.length] < added * 0x1p-20)
+      rebuild();
+  }
+
+  // add delta to the weight of slot i
+  private void add(int i, double delta) {
+    for (int k = i + 1; k < tree.length; k += k & -k) {
+      tree[k] += delta;
+    }
+
+    updates++;
+    if (delta > 0) added += delta;
+  }
+
+  // sum of the weights of slots 0 .. i-1
+  private double prefix(int i) {
+    double sum = 0.0;
+
+    for (int k = i; k > 0; k -= k & -k) {
+      sum += tree[k];
+    }
+
+    return sum;
+  }
+
+  // a random slot, chosen with probability proportional to its weight
+  private int randomSlot() {
+    // the descent below starts from the root, which sums every slot, so the
+    // target has to be drawn from that same sum
+    double target = StdRandom.uniform() * tree[items.length];
+    int slot = 0;
+
+    for (int step = items.length; step > 0; step >>>= 1) {
+      if (slot + step < tree.length && tree[slot + step] <= target) {
+        slot += step;
+        target -= tree[slot];
+      }
+    }
+
+    return Math.min(slot, N - 1); // rounding can land one past the last item
+  }
+
+  // is the queue empty?
+  public boolean isEmpty() {
+    return N == 0;
+  }
+
+  // return the number of items on the queue
+  public int size() {
+    return N;
+  }
+
+  // return the sum of the weights of all items on the queue
+  public double totalWeight() {
+    return prefix(N);
+  }
+
+  // add the item with the given positive weight
+  public void enqueue(Item item, double weight) {
+    if (item == null) throw new NullPointerException();
+    if (!(weight > 0.0) || Double.isInfinite(weight)) throw new java.lang.IllegalArgumentException();
+
+    if (N == items.length) resize(2 * items.length);
+
+    items[N] = item;
+    weights[N] = weight;
+    add(N, weight);
+    N++;
+
+    rebuildIfInexact();
+  }
+
+  // remove and return a random item, chosen in proportion to its weight
+  public Item dequeue() {
+    if (isEmpty()) throw new NoSuchElementException();
+
+    int slot = randomSlot();
+    int last = N - 1;
+    Item item = items[slot];
+
+    // move last item into the freed slot, then empty the last slot
+    add(slot, weights[last] - weights[slot]);
+    add(last, -weights[last]);
+    items[slot] = items[last];
+    weights[slot] = weights[last];
+    items[last] = null; // avoid loitering
+    weights[last] = 0.0;
+    N--;
+
+    // shrink array if necessary to preserve memory
+    if (N > 0 && N == items.length / 4) resize(items.length / 2);
+    else rebuildIfInexact();
+
+    return item;
+  }
+
+  // return (but do not remove) a random item, chosen in proportion to its weight
+  public Item sample() {
+    if (isEmpty()) throw new NoSuchElementException();
+
+    return items[randomSlot()];
+  }
+
+  // unit testing
+  public static void main(String[] args) {
+    WeightedRandomizedQueue<String> wrq = new WeightedRandomizedQueue<String>();
+
+    wrq.enqueue("A", 1.0);
+    wrq.enqueue("B", 2.0);
+    wrq.enqueue("C", 7.0);
+
+    int trials = 100000;
+    int[] counts = new int[3];
+
+    for (int t = 0; t < trials; t++) {
+      counts[wrq.sample().charAt(0) - 'A']++;
+    }
+
+    StdOut.printf("sampled A %.3f, B %.3f, C %.3f (expected 0.1, 0.2, 0.7)%n",
+                  (double) counts[0] / trials, (double) counts[1] / trials, (double) counts[2] / trials);
+
+    while (!wrq.isEmpty()) {
+      StdOut.println(wrq.dequeue() + " (total weight left " + wrq.totalWeight() + ")");
+    }
+
+    // heavy items should mostly come out first
+    WeightedRandomizedQueue<Integer> ranked = new WeightedRandomizedQueue<Integer>();
+
+    for (int i = 1; i <= 1000; i++)
+      ranked.enqueue(i, i * i);
+
+    long firstHalf = 0;
+    for (int i = 0; i < 500; i++)
+      firstHalf += ranked.dequeue();
+
+    StdOut.println("mean of the first 500 of 1 .. 1000 dequeued with weight i^2: " + firstHalf / 500.0);
+
+    // removing a heavy item must not cancel the light ones out of the tree
+    WeightedRandomizedQueue<Integer> skewed = new WeightedRandomizedQueue<Integer>();
+
+    for (int i = 0; i < 7; i++)
+      skewed.enqueue(i, 1.0);
+    skewed.enqueue(7, 1e17);
+
+    while (skewed.dequeue() != 7) { }
+
+    int[] lightCounts = new int[8];
+    for (int t = 0; t < 70000; t++)
+      lightCounts[skewed.sample()]++;
+
+    StdOut.println("after removing the 1e17 item, samples of the others: " + java.util.Arrays.toString(lightCounts));
+  }
+}
@@ -0,0 +1,266 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A Chase-Lev work-stealing deque: one owner thread pushes and pops items at
+ * the bottom end, any number of other threads steal items from the top end.
+ *
+ * This is the queue a work-stealing executor gives each of its workers:
+ * a worker push()es the tasks it spawns and pop()s its own work LIFO, which
+ * keeps it cache-warm, and when it runs dry it steal()s the oldest task of
+ * another worker. Owner operations touch no lock and only use a CAS when
+ * they race a thief for the last item; steal() is a single CAS on top.
+ *
+ * The circular array grows as needed and is never shrunk. Only the owner
+ * writes to it: a stolen item stays referenced by its slot until the owner
+ * reuses the slot, since a thief clearing it after winning top could wipe an
+ * item the owner has meanwhile pushed into the same slot.
+ *
+ * @param <Item>
+ */
+public class WorkStealingDeque<Item> {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private final AtomicLong top = new AtomicLong(); // next item to steal
+  private volatile long bottom; // next free slot for the owner
+  private volatile Buffer<Item> buffer = new Buffer<Item>(MIN_CAPACITY);
+
+  // circular array indexed by the ever-growing top and bottom counters
+  private static class Buffer<Item> {
+    private final AtomicReferenceArray<Item> items;
+    private final int mask;
+
+    public Buffer(int capacity) {
+      items = new AtomicReferenceArray<Item>(capacity);
+      mask = capacity - 1;
+    }
+
+    public int capacity() {
+      return mask + 1;
+    }
+
+    public Item get(long index) {
+      return items.getAcquire((int) index & mask);
+    }
+
+    public void put(long index, Item item) {
+      items.setRelease((int) index & mask, item);
+    }
+
+    // copy of the items top through bottom - 1 into a buffer twice the size
+    public Buffer<Item> grow(long top, long bottom) {
+      Buffer<Item> bigger = new Buffer<Item>(2 * capacity());
+
+      for (long i = top; i < bottom; i++) {
+        bigger.put(i, get(i));
+      }
+
+      return bigger;
+    }
+  }
+
+  // is the deque empty? only a snapshot while other threads are stealing
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  // number of items on the deque, only a snapshot while other threads are stealing
+  public int size() {
+    return (int) Math.max(0, bottom - top.get());
+  }
+
+  // add the item at the bottom; owner thread only
+  public void push(Item item) {
+    if (item == null) throw new NullPointerException();
+
+    long b = bottom;
+    long t = top.get();
+    Buffer<Item> a = buffer;
+
+    if (b - t > a.capacity() - 1) {
+      a = a.grow(t, b);
+      buffer = a;
+    }
+
+    a.put(b, item);
+    bottom = b + 1; // publishes the item to thieves
+  }
+
+  // remove and return the item at the bottom, null if the deque is empty;
+  // owner thread only
+  public Item pop() {
+    long b = bottom - 1;
+    Buffer<Item> a = buffer;
+
+    // claim the slot before looking at top, so a thief that read the old
+    // bottom and this pop cannot both take the same item
+    bottom = b;
+    long t = top.get();
+
+    if (t > b) { // was already empty
+      bottom = b + 1;
+      return null;
+    }
+
+    Item item = a.get(b);
+
+    if (t == b) {
+      // the last item: settle the race with thieves on top
+      if (!top.compareAndSet(t, t + 1))
+        item = null;
+      bottom = b + 1;
+    }
+
+    if (item != null)
+      a.put(b, null); // avoid loitering; no thief can claim index b any more
+
+    return item;
+  }
+
+  // remove and return the item at the top; returns null if the deque is
+  // empty or another thread won the race for the item, in which case the
+  // caller can simply try again; any thread
+  public Item steal() {
+    long t = top.get();
+    long b = bottom;
+
+    if (t >= b)
+      return null;
+
+    Buffer<Item> a = buffer;
+    Item item = a.get(t);
+
+    if (!top.compareAndSet(t, t + 1))
+      return null;
+
+    return item;
+  }
+
+  // stress test: the owner pushes 0 .. items-1 and pops some of them back
+  // while thieves steal; every item must come out exactly once
+  private static void stress(int items, int thieves) throws InterruptedException {
+    WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+    AtomicIntegerArray seen = new AtomicIntegerArray(items);
+    Thread[] threads = new Thread[thieves];
+    AtomicBoolean done = new AtomicBoolean();
+
+    for (int k = 0; k < thieves; k++) {
+      threads[k] = new Thread(() -> {
+        while (true) {
+          Integer item = deque.steal();
+
+          if (item != null) {
+            seen.incrementAndGet(item);
+          } else if (done.get() && deque.isEmpty()) {
+            return;
+          }
+        }
+      });
+      threads[k].start();
+    }
+
+    for (int i = 0; i < items; i++) {
+      deque.push(i);
+
+      // every few pushes, take some work back like a worker would
+      if (i % 3 == 0) {
+        Integer item = deque.pop();
+        if (item != null) seen.incrementAndGet(item);
+      }
+    }
+
+    for (Integer item = deque.pop(); item != null; item = deque.pop()) {
+      seen.incrementAndGet(item);
+    }
+
+    done.set(true);
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    int lost = 0;
+    int duplicated = 0;
+
+    for (int i = 0; i < items; i++) {
+      if (seen.get(i) == 0) lost++;
+      if (seen.get(i) > 1) duplicated++;
+    }
+
+    StdOut.println(items + " items, " + thieves + " thieves: " + lost + " lost, " + duplicated + " duplicated");
+
+    if (lost != 0 || duplicated != 0)
+      throw new IllegalStateException("work-stealing deque lost or duplicated items");
+  }
+
+  // stress test with one reference pushed over and over, as an executor
+  // re-submitting the same task does: every push must come out exactly once
+  private static void stressRepeated(int pushes, int thieves) throws InterruptedException {
+    WorkStealingDeque<Object> deque = new WorkStealingDeque<Object>();
+    Object task = new Object();
+    AtomicLong taken = new AtomicLong();
+    Thread[] threads = new Thread[thieves];
+    AtomicBoolean done = new AtomicBoolean();
+
+    for (int k = 0; k < thieves; k++) {
+      threads[k] = new Thread(() -> {
+        while (true) {
+          Object item = deque.steal();
+
+          if (item != null) {
+            taken.incrementAndGet();
+          } else if (done.get() && deque.isEmpty()) {
+            return;
+          }
+        }
+      });
+      threads[k].start();
+    }
+
+    for (int i = 0; i < pushes; i++) {
+      deque.push(task);
+
+      if (i % 3 == 0 && deque.pop() != null)
+        taken.incrementAndGet();
+    }
+
+    while (deque.pop() != null) {
+      taken.incrementAndGet();
+    }
+
+    done.set(true);
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    StdOut.println(pushes + " pushes of one reference, " + thieves + " thieves: " + taken.get() + " taken");
+
+    if (taken.get() != pushes)
+      throw new IllegalStateException("work-stealing deque lost or duplicated a repeated item");
+  }
+
+  // unit testing
+  public static void main(String[] args) throws InterruptedException {
+    WorkStealingDeque<String> deque = new WorkStealingDeque<String>();
+
+    deque.push("a");
+    deque.push("b");
+    deque.push("c");
+
+    StdOut.println(deque.steal()); // a, oldest first
+    StdOut.println(deque.pop()); // c, newest first
+    StdOut.println(deque.pop()); // b
+    StdOut.println(deque.pop()); // null
+
+    int thieves = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+
+    for (int round = 0; round < 10; round++) {
+      stress(1000000, thieves);
+      stressRepeated(2000000, Math.max(3, thieves));
+    }
+  }
+}